@@ -0,0 +1,177 @@
+package bench;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import graph.CompactGraph;
+import graph.ConcreteEdgesGraph;
+import graph.ConcreteVerticesGraph;
+import graph.ConcurrentGraph;
+import graph.Graph;
+import graph.IndexedGraph;
+
+/**
+ * Per-operation cost of the Graph implementations on random graphs with an
+ * average out-degree of 8.
+ *
+ * <p>{@link Small} runs every backend on graphs of up to 100k edges.
+ * ConcreteEdgesGraph builds its graph with one linear scan per edge, so it is
+ * kept to that size, where setting up takes a few minutes per benchmark;
+ * {@link Large} runs the backends whose updates take constant time on a
+ * graph of 10M edges. Either can be narrowed with, for example,
+ * {@code -p backend=IndexedGraph,CompactGraph}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class GraphBenchmark {
+
+    private static final int AVERAGE_DEGREE = 8;
+    private static final int PROBES = 1 << 16;
+
+    /** Every backend, on graphs small enough for the list-based one. */
+    public static class Small extends GraphBenchmark {
+        @Param({ "ConcreteEdgesGraph", "ConcreteVerticesGraph", "IndexedGraph", "CompactGraph", "ConcurrentGraph" })
+        public String backend;
+
+        @Param({ "1000", "100000" })
+        public int edges;
+
+        @Override
+        String backend() {
+            return backend;
+        }
+
+        @Override
+        int edges() {
+            return edges;
+        }
+    }
+
+    /** The backends that scale, on a graph of 10M edges. */
+    public static class Large extends GraphBenchmark {
+        @Param({ "IndexedGraph", "CompactGraph" })
+        public String backend;
+
+        @Param({ "10000000" })
+        public int edges;
+
+        @Override
+        String backend() {
+            return backend;
+        }
+
+        @Override
+        int edges() {
+            return edges;
+        }
+    }
+
+    abstract String backend();
+
+    abstract int edges();
+
+    private Graph<String> graph;
+    private String[] labels;
+    private String[] probeSources;
+    private String[] probeTargets;
+    private int next = 0;
+    private int weight = 1;
+
+    static Graph<String> newGraph(String backend) {
+        switch (backend) {
+        case "ConcreteEdgesGraph": return new ConcreteEdgesGraph<>();
+        case "ConcreteVerticesGraph": return new ConcreteVerticesGraph<>();
+        case "IndexedGraph": return new IndexedGraph<>();
+        case "CompactGraph": return new CompactGraph<>();
+        case "ConcurrentGraph": return new ConcurrentGraph<>();
+        default: throw new IllegalArgumentException("unknown backend " + backend);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        int edges = edges();
+        int vertices = Math.max(2, edges / AVERAGE_DEGREE);
+        labels = new String[vertices];
+        for (int i = 0; i < vertices; i++) {
+            labels[i] = "v" + i;
+        }
+        graph = newGraph(backend());
+        SplittableRandom random = new SplittableRandom(6005);
+        for (int i = 0; i < edges; i++) {
+            graph.set(labels[random.nextInt(vertices)], labels[random.nextInt(vertices)], 1 + random.nextInt(100));
+        }
+        // probe existing edges, so that set() updates rather than inserts
+        probeSources = new String[PROBES];
+        probeTargets = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            String source = labels[random.nextInt(vertices)];
+            Map<String, Integer> targets = graph.targets(source);
+            probeSources[i] = source;
+            probeTargets[i] = targets.isEmpty() ? labels[random.nextInt(vertices)] : targets.keySet().iterator().next();
+        }
+    }
+
+    private int probe() {
+        next = (next + 1) & (PROBES - 1);
+        return next;
+    }
+
+    /** Add a new isolated vertex and remove it again. */
+    @Benchmark
+    public boolean addAndRemove() {
+        graph.add("fresh");
+        return graph.remove("fresh");
+    }
+
+    /** Change the weight of an existing edge. */
+    @Benchmark
+    public int set() {
+        int i = probe();
+        weight = weight % 100 + 1;
+        return graph.set(probeSources[i], probeTargets[i], weight);
+    }
+
+    /** Remove a vertex with its edges, then put its outgoing edges back. */
+    @Benchmark
+    public int removeAndRestore() {
+        String vertex = probeSources[probe()];
+        Map<String, Integer> targets = graph.targets(vertex);
+        Map<String, Integer> sources = graph.sources(vertex);
+        graph.remove(vertex);
+        for (Map.Entry<String, Integer> edge : targets.entrySet()) {
+            graph.set(vertex, edge.getKey(), edge.getValue());
+        }
+        for (Map.Entry<String, Integer> edge : sources.entrySet()) {
+            graph.set(edge.getKey(), vertex, edge.getValue());
+        }
+        return targets.size() + sources.size();
+    }
+
+    @Benchmark
+    public Map<String, Integer> sources() {
+        return graph.sources(probeTargets[probe()]);
+    }
+
+    @Benchmark
+    public Map<String, Integer> targets() {
+        return graph.targets(probeSources[probe()]);
+    }
+}
@@ -0,0 +1,28 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so that every result
+ * comes with its allocation rate (gc.alloc.rate and gc.alloc.rate.norm).
+ * Accepts the usual JMH command-line options, for example a benchmark regex
+ * or {@code -p edges=1000}.
+ */
+public class Main {
+
+    /**
+     * @param args JMH command-line options
+     * @throws Exception if the options are invalid or a benchmark fails to run
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
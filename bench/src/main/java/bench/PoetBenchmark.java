@@ -0,0 +1,142 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import poet.GraphPoet;
+
+/**
+ * GraphPoet construction throughput and poem() latency over synthetic
+ * Zipf-distributed corpora.
+ *
+ * <p>The build benchmarks report corpus throughput in the
+ * {@code megabytes} secondary result, in MB/s. The poem benchmark samples
+ * individual calls, so JMH reports latency percentiles. The walk benchmark
+ * reports generated words per second in the {@code words} secondary result.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PoetBenchmark {
+
+    private static final int INPUTS = 1024;
+    private static final int WALK_WORDS = 4096;
+
+    @Param({ "16" })
+    public int corpusMegabytes;
+
+    @Param({ "50000" })
+    public int vocabulary;
+
+    @Param({ "8" })
+    public int inputWords;
+
+    private Path corpus;
+    private GraphPoet poet;
+    private String[] inputs;
+    private int next = 0;
+    private String walkStart;
+
+    /**
+     * Counts megabytes of corpus ingested; JMH reports its rate as MB/s.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    /**
+     * Counts words generated by random walks; JMH reports its rate as words/s.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Walker {
+        public long words;
+        private final SplittableRandom random = new SplittableRandom(6005);
+        private final StringBuilder text = new StringBuilder();
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            words = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ZipfWords words = new ZipfWords(vocabulary, 1.07, 6005);
+        corpus = Files.createTempFile("zipf-corpus", ".txt");
+        words.writeCorpus(corpus, (long) corpusMegabytes << 20);
+        poet = new GraphPoet(corpus);
+        inputs = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            inputs[i] = words.sentence(inputWords);
+        }
+        walkStart = words.sentence(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(corpus);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public GraphPoet build(Throughput throughput) throws IOException {
+        GraphPoet built = new GraphPoet(corpus);
+        throughput.megabytes += corpusMegabytes;
+        return built;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public GraphPoet buildParallel(Throughput throughput) throws IOException {
+        GraphPoet built = GraphPoet.parallel(corpus);
+        throughput.megabytes += corpusMegabytes;
+        return built;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String poem() {
+        next = (next + 1) % INPUTS;
+        return poet.poem(inputs[next]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int walk(Walker walker) throws IOException {
+        walker.text.setLength(0);
+        poet.walk(walkStart, WALK_WORDS, walker.random, walker.text);
+        walker.words += WALK_WORDS;
+        return walker.text.length();
+    }
+}
@@ -0,0 +1,89 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A seeded source of synthetic words whose frequencies follow Zipf's law, as
+ * word frequencies in natural-language text roughly do: the word of rank r is
+ * drawn with probability proportional to 1 / r^exponent.
+ */
+final class ZipfWords {
+
+    private final String[] words;
+    private final double[] cumulative;
+    private final SplittableRandom random;
+
+    // Abstraction function:
+    //   represents an infinite random sequence drawing words[i] with probability
+    //   cumulative[i] - cumulative[i-1] (cumulative[-1] == 0)
+    // Representation invariant:
+    //   words.length == cumulative.length > 0
+    //   cumulative is non-decreasing and ends at 1
+    // Safety from rep exposure:
+    //   all fields are private and never returned
+
+    /**
+     * @param vocabulary number of distinct words, at least 1
+     * @param exponent Zipf exponent; about 1 for English text
+     * @param seed seed of the random sequence
+     */
+    ZipfWords(int vocabulary, double exponent, long seed) {
+        words = new String[vocabulary];
+        cumulative = new double[vocabulary];
+        double total = 0;
+        for (int rank = 0; rank < vocabulary; rank++) {
+            words[rank] = "w" + Integer.toString(rank, 36);
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < vocabulary; rank++) {
+            cumulative[rank] /= total;
+        }
+        cumulative[vocabulary - 1] = 1;
+        random = new SplittableRandom(seed);
+    }
+
+    /** @return the next word of the sequence */
+    String next() {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        return words[i < 0 ? -1 - i : i];
+    }
+
+    /**
+     * @param count number of words
+     * @return the next count words of the sequence joined by single spaces
+     */
+    String sentence(int count) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sentence.append(' ');
+            sentence.append(next());
+        }
+        return sentence.toString();
+    }
+
+    /**
+     * Write a corpus of lines of twelve words each.
+     *
+     * @param file file to create or overwrite
+     * @param bytes approximate size of the corpus in bytes
+     * @throws IOException if the file cannot be written
+     */
+    void writeCorpus(Path file, long bytes) throws IOException {
+        long written = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            while (written < bytes) {
+                String line = sentence(12);
+                out.write(line);
+                out.write('\n');
+                written += line.length() + 1;
+            }
+        }
+    }
+}
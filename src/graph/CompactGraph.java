@@ -0,0 +1,204 @@
+package graph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mutable weighted directed graph with a compact primitive representation,
+ * for graphs with tens of millions of edges.
+ *
+ * <p>Vertex labels are interned to dense int IDs, and each vertex keeps its
+ * outgoing and incoming edges in open-addressing {@code int -> int} tables
+ * from neighbor ID to weight. Updating or looking up an edge touches only
+ * primitive arrays; labels are boxed into maps only when returned from
+ * {@link #sources(Object)} and {@link #targets(Object)}.
+ *
+ * <p>Capacity planning: every edge occupies one 8-byte slot (int key plus int
+ * weight) in its source's outgoing table and one in its target's incoming
+ * table. Tables grow when they are 3/4 full and so are between 3/8 and 3/4
+ * full, which puts the cost of an edge between 21 and 43 bytes, about 32 bytes
+ * on average. Each vertex additionally costs about 180 bytes for its two
+ * tables plus its label and its share of the label dictionary. By comparison
+ * an edge in {@link IndexedGraph} costs two hash map entries, roughly 80 to 100
+ * bytes.
+ */
+public class CompactGraph<L> implements Graph<L> {
+
+    private final LabelIndex<L> labels;
+    private final IntAdjacency adjacency;
+    private Set<L> vertices = null;
+
+    // Abstraction function:
+    //   represents the graph whose vertices are the labels in labels, and which
+    //   has an edge labels.label(s) -> labels.label(t) of weight w iff
+    //   adjacency has an edge s -> t of weight w
+    // Representation invariant:
+    //   adjacency.bound() >= labels.limit()
+    //   the vertices of adjacency are exactly the IDs of live labels
+    //   vertices is null or an unmodifiable set of exactly the live labels
+    // Safety from rep exposure:
+    //   all fields are private; sources() and targets() return fresh maps of
+    //   labels and boxed weights, vertices() returns an unmodifiable snapshot
+    //   that is never mutated, and forEachSource() and forEachTarget() pass
+    //   out only labels and primitive weights
+
+    /** Make an empty graph. */
+    public CompactGraph() {
+        this(8);
+    }
+
+    // Make an empty graph with room for expectedVertices vertices without resizing.
+    CompactGraph(int expectedVertices) {
+        labels = new LabelIndex<>(expectedVertices);
+        adjacency = new IntAdjacency(expectedVertices);
+    }
+
+    // Checks the whole rep invariant, in time proportional to the size of the graph.
+    private boolean repOk() {
+        if (adjacency.bound() < labels.limit() || !adjacency.repOk()) return false;
+        for (int id = 0; id < adjacency.bound(); id++) {
+            boolean live = id < labels.limit() && labels.label(id) != null;
+            if (adjacency.contains(id) != live) return false;
+        }
+        return true;
+    }
+
+    private void checkRep() {
+        assert repOk() : "rep invariant violated";
+    }
+
+    // Checks that the label and the adjacency agree about one ID, in constant time.
+    private void checkRep(int id) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
+        }
+        adjacency.checkVertex(id);
+        assert adjacency.bound() >= labels.limit();
+        assert adjacency.contains(id) == (labels.label(id) != null);
+    }
+
+    // Checks that the two directions of the edge from source to target agree,
+    // or the whole rep invariant if full checks are on.
+    private void checkEdge(int source, int target) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
+        }
+        adjacency.checkEdge(source, target);
+    }
+
+    /**
+     * Check the whole rep invariant of this graph, whether or not assertions
+     * are enabled. Takes time proportional to the size of the graph.
+     * 
+     * @throws IllegalStateException if the rep invariant does not hold
+     */
+    public void validate() {
+        if (!repOk()) throw new IllegalStateException("rep invariant violated");
+    }
+
+    private int intern(L vertex) {
+        int id = labels.intern(vertex);
+        if (adjacency.add(id)) {
+            vertices = null;
+        }
+        checkRep(id);
+        return id;
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        if (labels.id(vertex) >= 0) {
+            return false;
+        }
+        intern(vertex);
+        return true;
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        int s = intern(source);
+        int t = intern(target);
+        int previous = adjacency.set(s, t, weight);
+        checkEdge(s, t);
+        return previous;
+    }
+
+    @Override
+    public int increment(L source, L target, int delta) {
+        int s = intern(source);
+        int t = intern(target);
+        int previous = adjacency.increment(s, t, delta);
+        checkEdge(s, t);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        int id = labels.id(vertex);
+        if (id < 0) {
+            return false;
+        }
+        adjacency.remove(id);
+        labels.release(vertex);
+        vertices = null;
+        checkRep(id);
+        return true;
+    }
+
+    @Override
+    public Set<L> vertices() {
+        if (vertices == null) {
+            Set<L> snapshot = new HashSet<>();
+            for (int id = 0; id < labels.limit(); id++) {
+                L label = labels.label(id);
+                if (label != null) snapshot.add(label);
+            }
+            vertices = Collections.unmodifiableSet(snapshot);
+        }
+        return vertices;
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        Map<L, Integer> map = new HashMap<>();
+        int id = labels.id(target);
+        if (id >= 0) adjacency.forEachSource(id, (source, weight) -> map.put(labels.label(source), weight));
+        return map;
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        Map<L, Integer> map = new HashMap<>();
+        int id = labels.id(source);
+        if (id >= 0) adjacency.forEachTarget(id, (target, weight) -> map.put(labels.label(target), weight));
+        return map;
+    }
+
+    @Override
+    public void forEachSource(L target, NeighborConsumer<? super L> action) {
+        int id = labels.id(target);
+        if (id >= 0) adjacency.forEachSource(id, (source, weight) -> action.accept(labels.label(source), weight));
+    }
+
+    @Override
+    public void forEachTarget(L source, NeighborConsumer<? super L> action) {
+        int id = labels.id(source);
+        if (id >= 0) adjacency.forEachTarget(id, (target, weight) -> action.accept(labels.label(target), weight));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder edges = new StringBuilder();
+        for (int id = 0; id < labels.limit(); id++) {
+            if (labels.label(id) == null || adjacency.outDegree(id) == 0) continue;
+            if (edges.length() > 0) edges.append(", ");
+            edges.append(labels.label(id)).append('=').append(targets(labels.label(id)));
+        }
+        return "Vertices: " + vertices() + ", Edges: {" + edges + "}";
+    }
+}
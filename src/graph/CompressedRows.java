@@ -0,0 +1,126 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The compressed sparse row layout of a graph's edges, built once and shared
+ * by {@link FrozenGraph}, which queries it on the heap, and
+ * {@link MappedGraph}, which writes it to a file.
+ *
+ * <p>The edges out of (and into) each vertex are one contiguous run of two
+ * parallel int arrays, neighbor IDs and weights, sorted by neighbor ID. The
+ * out-runs also have a permutation giving the order in which the original
+ * graph's {@code targets} map listed them. Building takes time
+ * O(E log(max degree)), plus the cost of copying targets() once per vertex.
+ */
+final class CompressedRows {
+
+    final int[] outStart;
+    final int[] outTargets;
+    final int[] outWeights;
+    final int[] outOrder;
+    final int[] inStart;
+    final int[] inSources;
+    final int[] inWeights;
+
+    // Abstraction function:
+    //   represents the edges labels.label(s) -> labels.label(outTargets[i]) of
+    //   weight outWeights[i], for every s and every i in [outStart[s], outStart[s+1])
+    // Representation invariant:
+    //   outStart and inStart have length n+1, where n is the number of
+    //     vertices, start at 0, are non-decreasing, and end at the number of edges
+    //   each run of outTargets (inSources) is strictly increasing
+    //   outOrder restricted to a run is a permutation of that run
+    //   the in-runs hold exactly the reverse of the out-runs, with equal weights
+    // Safety from rep exposure:
+    //   the arrays are exposed to the package, whose classes only read them
+
+    /**
+     * Lay out the edges of a graph.
+     *
+     * @param graph graph to lay out
+     * @param labels index in which exactly the vertices of graph are
+     *               interned, to IDs 0 to labels.size() - 1
+     * @throws IllegalArgumentException if graph has more edges than an array can hold
+     */
+    <L> CompressedRows(Graph<L> graph, LabelIndex<L> labels) {
+        int n = labels.size();
+        Object[] targetMaps = new Object[n];
+        long edgeCount = 0;
+        for (int id = 0; id < n; id++) {
+            Map<L, Integer> targets = graph.targets(labels.label(id));
+            targetMaps[id] = targets;
+            edgeCount += targets.size();
+        }
+        if (edgeCount > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("too many edges: " + edgeCount);
+        int edges = (int) edgeCount;
+
+        outStart = new int[n + 1];
+        outTargets = new int[edges];
+        outWeights = new int[edges];
+        outOrder = new int[edges];
+        int[] inDegree = new int[n];
+        long[] scratch = new long[edges];
+        int[] weightsInOrder = new int[edges];
+        int next = 0;
+        for (int id = 0; id < n; id++) {
+            outStart[id] = next;
+            @SuppressWarnings("unchecked")
+            Map<L, Integer> targets = (Map<L, Integer>) targetMaps[id];
+            for (Map.Entry<L, Integer> edge : targets.entrySet()) {
+                int target = labels.id(edge.getKey());
+                scratch[next] = ((long) target << 32) | (next - outStart[id]);
+                weightsInOrder[next] = edge.getValue();
+                inDegree[target]++;
+                next++;
+            }
+            Arrays.sort(scratch, outStart[id], next);
+            for (int i = outStart[id]; i < next; i++) {
+                int position = outStart[id] + (int) scratch[i];
+                outTargets[i] = (int) (scratch[i] >>> 32);
+                outWeights[i] = weightsInOrder[position];
+                outOrder[position] = i;
+            }
+        }
+        outStart[n] = next;
+
+        inStart = new int[n + 1];
+        for (int id = 0; id < n; id++) {
+            inStart[id + 1] = inStart[id] + inDegree[id];
+        }
+        inSources = new int[edges];
+        inWeights = new int[edges];
+        int[] fill = Arrays.copyOf(inStart, n);
+        // sources are visited in increasing ID order, so every in-run comes out sorted
+        for (int source = 0; source < n; source++) {
+            for (int i = outStart[source]; i < outStart[source + 1]; i++) {
+                int slot = fill[outTargets[i]]++;
+                inSources[slot] = source;
+                inWeights[slot] = outWeights[i];
+            }
+        }
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert outStart.length == inStart.length;
+        assert outStart[outStart.length - 1] == outTargets.length;
+        assert inStart[inStart.length - 1] == inSources.length;
+    }
+
+    /** @return number of vertices */
+    int vertices() {
+        return outStart.length - 1;
+    }
+
+    /** @return number of edges */
+    int edges() {
+        return outTargets.length;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedRows with " + vertices() + " vertices and " + edges() + " edges";
+    }
+}
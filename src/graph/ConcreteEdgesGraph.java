@@ -1,80 +1,127 @@
 package graph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class ConcreteEdgesGraph implements Graph<String> {
+public class ConcreteEdgesGraph<L> implements Graph<L> {
     
-    private final Set<String> vertices = new HashSet<>();
-    private final List<Edge> edges = new ArrayList<>();
+    private final Set<L> vertices = new HashSet<>();
+    private final List<Edge<L>> edges = new ArrayList<>();
+    private Set<L> snapshot = null;
+    
+    // Checks the whole rep invariant, in time proportional to the size of the graph.
+    private boolean repOk() {
+        Set<List<L>> seen = new HashSet<>();
+        for (Edge<L> edge : edges) {
+            if (!vertices.contains(edge.getSource()) || !vertices.contains(edge.getTarget())) return false;
+            if (edge.getWeight() <= 0) return false;
+            if (!seen.add(Arrays.asList(edge.getSource(), edge.getTarget()))) return false;
+        }
+        return true;
+    }
     
     private void checkRep() {
-        for (Edge edge : edges) {
-            assert vertices.contains(edge.getSource()) && vertices.contains(edge.getTarget());
-            assert edge.getWeight() >= 0;
+        assert repOk() : "rep invariant violated";
+    }
+    
+    // Checks the part of the rep invariant that adding a vertex or setting an
+    // edge between source and target could break.
+    private void checkRep(L source, L target) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
+        }
+        assert vertices.contains(source) && vertices.contains(target);
+    }
+    
+    // Checks the part of the rep invariant that removing vertex could break,
+    // in time proportional to the removal itself.
+    private void checkRemoved(L vertex) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
         }
+        assert !vertices.contains(vertex);
+        assert edges.stream().noneMatch(edge -> edge.getSource().equals(vertex) || edge.getTarget().equals(vertex));
+    }
+    
+    /**
+     * Check the whole rep invariant of this graph, whether or not assertions
+     * are enabled. Takes time proportional to the size of the graph.
+     * 
+     * @throws IllegalStateException if the rep invariant does not hold
+     */
+    public void validate() {
+        if (!repOk()) throw new IllegalStateException("rep invariant violated");
     }
     
     @Override
-    public boolean add(String vertex) {
+    public boolean add(L vertex) {
         if (vertices.contains(vertex)) {
             return false;
         }
         vertices.add(vertex);
-        checkRep();
+        snapshot = null;
+        checkRep(vertex, vertex);
         return true;
     }
     
     @Override
-    public int set(String source, String target, int weight) {
+    public int set(L source, L target, int weight) {
         if (!vertices.contains(source)) add(source);
         if (!vertices.contains(target)) add(target);
         
-        for (Edge edge : edges) {
+        for (Edge<L> edge : edges) {
             if (edge.getSource().equals(source) && edge.getTarget().equals(target)) {
                 int oldWeight = edge.getWeight();
                 if (weight == 0) {
                     edges.remove(edge);
                 } else {
-                    edges.set(edges.indexOf(edge), new Edge(source, target, weight));
+                    edges.set(edges.indexOf(edge), new Edge<>(source, target, weight));
                 }
-                checkRep();
+                checkRep(source, target);
                 return oldWeight;
             }
         }
         
         if (weight != 0) {
-            edges.add(new Edge(source, target, weight));
+            edges.add(new Edge<>(source, target, weight));
         }
         
-        checkRep();
+        checkRep(source, target);
         return 0;
     }
     
     @Override
-    public boolean remove(String vertex) {
+    public boolean remove(L vertex) {
         if (!vertices.contains(vertex)) {
             return false;
         }
         vertices.remove(vertex);
+        snapshot = null;
         edges.removeIf(edge -> edge.getSource().equals(vertex) || edge.getTarget().equals(vertex));
-        checkRep();
+        checkRemoved(vertex);
         return true;
     }
     
     @Override
-    public Set<String> vertices() {
-        return new HashSet<>(vertices);
+    public Set<L> vertices() {
+        if (snapshot == null) {
+            snapshot = Collections.unmodifiableSet(new HashSet<>(vertices));
+        }
+        return snapshot;
     }
     
     @Override
-    public Map<String, Integer> sources(String target) {
-        Map<String, Integer> sources = new HashMap<>();
-        for (Edge edge : edges) {
+    public Map<L, Integer> sources(L target) {
+        Map<L, Integer> sources = new HashMap<>();
+        for (Edge<L> edge : edges) {
             if (edge.getTarget().equals(target)) {
                 sources.put(edge.getSource(), edge.getWeight());
             }
@@ -83,9 +130,9 @@ public class ConcreteEdgesGraph implements Graph<String> {
     }
     
     @Override
-    public Map<String, Integer> targets(String source) {
-        Map<String, Integer> targets = new HashMap<>();
-        for (Edge edge : edges) {
+    public Map<L, Integer> targets(L source) {
+        Map<L, Integer> targets = new HashMap<>();
+        for (Edge<L> edge : edges) {
             if (edge.getSource().equals(source)) {
                 targets.put(edge.getTarget(), edge.getWeight());
             }
@@ -93,18 +140,36 @@ public class ConcreteEdgesGraph implements Graph<String> {
         return targets;
     }
     
+    @Override
+    public void forEachSource(L target, NeighborConsumer<? super L> action) {
+        for (Edge<L> edge : edges) {
+            if (edge.getTarget().equals(target)) {
+                action.accept(edge.getSource(), edge.getWeight());
+            }
+        }
+    }
+    
+    @Override
+    public void forEachTarget(L source, NeighborConsumer<? super L> action) {
+        for (Edge<L> edge : edges) {
+            if (edge.getSource().equals(source)) {
+                action.accept(edge.getTarget(), edge.getWeight());
+            }
+        }
+    }
+    
     @Override
     public String toString() {
         return "Vertices: " + vertices + ", Edges: " + edges;
     }
 }
 
-class Edge {
-    private final String source;
-    private final String target;
+class Edge<L> {
+    private final L source;
+    private final L target;
     private final int weight;
     
-    public Edge(String source, String target, int weight) {
+    public Edge(L source, L target, int weight) {
         this.source = source;
         this.target = target;
         this.weight = weight;
@@ -115,11 +180,11 @@ class Edge {
         assert weight >= 0;
     }
     
-    public String getSource() {
+    public L getSource() {
         return source;
     }
     
-    public String getTarget() {
+    public L getTarget() {
         return target;
     }
     
@@ -3,144 +3,272 @@
  */
 package graph;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-public class ConcreteVerticesGraph implements Graph<String> {
+public class ConcreteVerticesGraph<L> implements Graph<L> {
     
-    private final List<Vertex> vertices = new ArrayList<>();
+    private final Map<L, Vertex<L>> vertices = new LinkedHashMap<>();
+    private Set<L> snapshot = null;
 
+    // Abstraction function:
+    //   represents the graph whose vertices are the labels of vertices.values(),
+    //   and which has an edge s -> t of weight w iff vertices.get(s).edges().get(t) == w
+    // Representation invariant:
+    //   vertices.get(l).getLabel().equals(l) for every key l
+    //   every key of a vertex's outgoing and incoming maps is a vertex
+    //   vertices.get(s).edges().get(t) == vertices.get(t).sources().get(s)
+    //     for all s, t, and all weights are positive
+    //   snapshot is null or an unmodifiable copy of vertices.keySet()
+    // Safety from rep exposure:
+    //   all fields are private; sources() and targets() return fresh maps,
+    //   vertices() returns an unmodifiable snapshot that is never mutated,
+    //   and Vertex objects are never returned
+
+    // Checks the whole rep invariant, in time proportional to the size of the graph.
+    private boolean repOk() {
+        int edges = 0;
+        for (Map.Entry<L, Vertex<L>> entry : vertices.entrySet()) {
+            Vertex<L> vertex = entry.getValue();
+            if (!vertex.getLabel().equals(entry.getKey())) return false;
+            for (Map.Entry<L, Integer> edge : vertex.edges().entrySet()) {
+                Vertex<L> target = vertices.get(edge.getKey());
+                if (target == null || edge.getValue() <= 0) return false;
+                if (!edge.getValue().equals(target.sources().get(vertex.getLabel()))) return false;
+                edges++;
+            }
+        }
+        for (Vertex<L> vertex : vertices.values()) {
+            for (L source : vertex.sources().keySet()) {
+                if (!vertices.containsKey(source)) return false;
+            }
+            edges -= vertex.sources().size();
+        }
+        return edges == 0;
+    }
+    
     private void checkRep() {
-        for (Vertex vertex : vertices) {
-            assert vertex.getEdges().values().stream().allMatch(weight -> weight >= 0);
+        assert repOk() : "rep invariant violated";
+    }
+    
+    // Checks the part of the rep invariant that adding or setting an edge
+    // from srcVertex to tgtVertex could break, in constant time.
+    private void checkRep(Vertex<L> srcVertex, Vertex<L> tgtVertex) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
         }
+        Integer weight = srcVertex.edges().get(tgtVertex.getLabel());
+        assert weight == null || weight > 0;
+        assert weight == null ? !tgtVertex.sources().containsKey(srcVertex.getLabel())
+                : weight.equals(tgtVertex.sources().get(srcVertex.getLabel()));
     }
     
-    @Override
-    public boolean add(String vertex) {
-        for (Vertex v : vertices) {
-            if (v.getLabel().equals(vertex)) return false;
+    // Checks the part of the rep invariant that removing removed could break,
+    // in time proportional to its degree.
+    private void checkRemoved(Vertex<L> removed) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
         }
-        vertices.add(new Vertex(vertex));
-        checkRep();
-        return true;
+        L label = removed.getLabel();
+        assert !vertices.containsKey(label);
+        for (L target : removed.edges().keySet()) {
+            Vertex<L> v = vertices.get(target);
+            assert v == null || !v.sources().containsKey(label);
+        }
+        for (L source : removed.sources().keySet()) {
+            Vertex<L> v = vertices.get(source);
+            assert v == null || !v.edges().containsKey(label);
+        }
+    }
+    
+    /**
+     * Check the whole rep invariant of this graph, whether or not assertions
+     * are enabled. Takes time proportional to the size of the graph.
+     * 
+     * @throws IllegalStateException if the rep invariant does not hold
+     */
+    public void validate() {
+        if (!repOk()) throw new IllegalStateException("rep invariant violated");
     }
     
     @Override
-    public int set(String source, String target, int weight) {
-        Vertex srcVertex = null, tgtVertex = null;
-        for (Vertex v : vertices) {
-            if (v.getLabel().equals(source)) srcVertex = v;
-            if (v.getLabel().equals(target)) tgtVertex = v;
+    public boolean add(L vertex) {
+        if (vertices.containsKey(vertex)) return false;
+        Vertex<L> added = new Vertex<>(vertex);
+        vertices.put(vertex, added);
+        snapshot = null;
+        checkRep(added, added);
+        return true;
+    }
+    
+    // Find the vertex with a label, adding it if there is none.
+    private Vertex<L> intern(L label) {
+        Vertex<L> vertex = vertices.get(label);
+        if (vertex == null) {
+            vertex = new Vertex<>(label);
+            vertices.put(label, vertex);
+            snapshot = null;
         }
-        if (srcVertex == null) srcVertex = new Vertex(source);
-        if (tgtVertex == null) tgtVertex = new Vertex(target);
+        return vertex;
+    }
+    
+    @Override
+    public int set(L source, L target, int weight) {
+        Vertex<L> srcVertex = intern(source);
+        Vertex<L> tgtVertex = intern(target);
         
         int prevWeight = srcVertex.setEdge(target, weight);
-        if (!vertices.contains(srcVertex)) vertices.add(srcVertex);
-        if (!vertices.contains(tgtVertex)) vertices.add(tgtVertex);
+        tgtVertex.setSource(source, weight);
         
-        checkRep();
+        checkRep(srcVertex, tgtVertex);
         return prevWeight;
     }
     
     @Override
-    public boolean remove(String vertex) {
-        Vertex v = null;
-        for (Vertex vert : vertices) {
-            if (vert.getLabel().equals(vertex)) {
-                v = vert;
-                break;
-            }
-        }
+    public boolean remove(L vertex) {
+        Vertex<L> v = vertices.remove(vertex);
         if (v == null) return false;
+        snapshot = null;
         
-        vertices.remove(v);
-        for (Vertex vert : vertices) {
-            vert.removeEdge(vertex);
+        // only the neighbors of the vertex refer to it
+        for (L target : v.edges().keySet()) {
+            Vertex<L> tgtVertex = vertices.get(target);
+            if (tgtVertex != null) tgtVertex.removeSource(vertex);
+        }
+        for (L source : v.sources().keySet()) {
+            Vertex<L> srcVertex = vertices.get(source);
+            if (srcVertex != null) srcVertex.removeEdge(vertex);
         }
         
-        checkRep();
+        checkRemoved(v);
         return true;
     }
     
     @Override
-    public Set<String> vertices() {
-        Set<String> vertexSet = new HashSet<>();
-        for (Vertex v : vertices) {
-            vertexSet.add(v.getLabel());
+    public Set<L> vertices() {
+        if (snapshot == null) {
+            snapshot = Collections.unmodifiableSet(new HashSet<>(vertices.keySet()));
         }
-        return vertexSet;
+        return snapshot;
+    }
+    
+    @Override
+    public Map<L, Integer> sources(L target) {
+        Vertex<L> v = vertices.get(target);
+        return v == null ? new HashMap<>() : new HashMap<>(v.sources());
+    }
+    
+    @Override
+    public Map<L, Integer> targets(L source) {
+        Vertex<L> v = vertices.get(source);
+        return v == null ? new HashMap<>() : new HashMap<>(v.edges());
     }
     
     @Override
-    public Map<String, Integer> sources(String target) {
-        Map<String, Integer> sources = new HashMap<>();
-        for (Vertex v : vertices) {
-            Integer weight = v.getEdges().get(target);
-            if (weight != null) sources.put(v.getLabel(), weight);
+    public void forEachSource(L target, NeighborConsumer<? super L> action) {
+        Vertex<L> v = vertices.get(target);
+        if (v == null) return;
+        for (Map.Entry<L, Integer> edge : v.sources().entrySet()) {
+            action.accept(edge.getKey(), edge.getValue());
         }
-        return sources;
     }
     
     @Override
-    public Map<String, Integer> targets(String source) {
-        for (Vertex v : vertices) {
-            if (v.getLabel().equals(source)) {
-                return new HashMap<>(v.getEdges());
-            }
+    public void forEachTarget(L source, NeighborConsumer<? super L> action) {
+        Vertex<L> v = vertices.get(source);
+        if (v == null) return;
+        for (Map.Entry<L, Integer> edge : v.edges().entrySet()) {
+            action.accept(edge.getKey(), edge.getValue());
         }
-        return new HashMap<>();
     }
     
     @Override
     public String toString() {
-        return "Vertices: " + vertices;
+        return "Vertices: " + vertices.values();
     }
 }
 
-class Vertex {
-    private final String label;
-    private final Map<String, Integer> edges = new HashMap<>();
+class Vertex<L> {
+    private final L label;
+    private final Map<L, Integer> edges = new HashMap<>();
+    private final Map<L, Integer> sources = new HashMap<>();
     
-    public Vertex(String label) {
+    public Vertex(L label) {
         this.label = label;
         checkRep();
     }
     
     private void checkRep() {
-        assert edges.values().stream().allMatch(weight -> weight >= 0);
+        assert edges.values().stream().allMatch(weight -> weight > 0);
+        assert sources.values().stream().allMatch(weight -> weight > 0);
     }
     
-    public String getLabel() {
+    // Checks the one edge that a mutation touched, in constant time.
+    private void checkRep(Map<L, Integer> map, L neighbor) {
+        Integer weight = map.get(neighbor);
+        assert weight == null || weight > 0;
+    }
+    
+    public L getLabel() {
         return label;
     }
     
-    public Map<String, Integer> getEdges() {
+    public Map<L, Integer> getEdges() {
         return new HashMap<>(edges);
     }
     
-    public int setEdge(String target, int weight) {
-        int prevWeight = edges.getOrDefault(target, 0);
+    /**
+     * @return an unmodifiable live view of this vertex's outgoing edges, for
+     *         reading without a copy
+     */
+    public Map<L, Integer> edges() {
+        return Collections.unmodifiableMap(edges);
+    }
+    
+    /**
+     * @return an unmodifiable live view of this vertex's incoming edges, by
+     *         source, for reading without a copy
+     */
+    public Map<L, Integer> sources() {
+        return Collections.unmodifiableMap(sources);
+    }
+    
+    public int setEdge(L target, int weight) {
+        return put(edges, target, weight);
+    }
+    
+    public int setSource(L source, int weight) {
+        return put(sources, source, weight);
+    }
+    
+    private int put(Map<L, Integer> map, L neighbor, int weight) {
+        int prevWeight = map.getOrDefault(neighbor, 0);
         if (weight == 0) {
-            edges.remove(target);
+            map.remove(neighbor);
         } else {
-            edges.put(target, weight);
+            map.put(neighbor, weight);
         }
-        checkRep();
+        checkRep(map, neighbor);
         return prevWeight;
     }
     
-    public void removeEdge(String target) {
+    public void removeEdge(L target) {
         edges.remove(target);
-        checkRep();
+        checkRep(edges, target);
+    }
+    
+    public void removeSource(L source) {
+        sources.remove(source);
+        checkRep(sources, source);
     }
     
     @Override
     public String toString() {
         return "Vertex(" + label + " -> " + edges + ")";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,263 @@
+package graph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe mutable weighted directed graph, for many writers updating
+ * edge weights while readers query the graph.
+ *
+ * <p>Adjacency is kept in {@link ConcurrentHashMap}s, forward and reverse.
+ * Mutations are serialized per vertex by a fixed array of lock stripes: add
+ * locks the stripe of its vertex, and set and increment lock the stripes of
+ * both endpoints, in stripe order so that they cannot deadlock. Writers that
+ * touch disjoint stripes proceed in parallel. Vertex removal touches
+ * arbitrarily many neighbors and so locks every stripe; it is expected to be
+ * rare next to edge updates.
+ *
+ * <p>Every mutation is linearizable: it takes effect atomically at some point
+ * while it holds its locks. Queries take no locks. A query that reads a single
+ * edge sees a state that some linearization passed through; a query that
+ * reads many edges, such as targets() or vertices(), is weakly consistent, in
+ * the sense of the iterators of {@link ConcurrentHashMap}.
+ */
+public class ConcurrentGraph<L> implements Graph<L> {
+
+    private static final int STRIPES = 64;
+
+    private final Map<L, Map<L, Integer>> forward = new ConcurrentHashMap<>();
+    private final Map<L, Map<L, Integer>> reverse = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    // Abstraction function:
+    //   represents the graph whose vertices are forward.keySet() and which has an
+    //   edge source -> target of weight w iff forward.get(source).get(target) == w
+    // Representation invariant:
+    //   when no mutation is in progress:
+    //     forward.keySet().equals(reverse.keySet())
+    //     forward.get(s).get(t) == reverse.get(t).get(s) for every edge, and
+    //       every key of an inner map is itself a vertex
+    //   all weights are positive
+    // Safety from rep exposure:
+    //   all fields are private and final; vertices(), sources() and targets()
+    //   return fresh collections
+    // Thread safety argument:
+    //   the maps are concurrent, so unlocked readers never see a corrupt map
+    //   every mutation holds the stripe of each vertex whose entries it
+    //     changes, so mutations of the same vertex are serialized and the rep
+    //     invariant is restored before the stripe is released
+    //   remove() holds every stripe, so no other mutation overlaps it
+    //   locks are always acquired in increasing stripe order
+
+    public ConcurrentGraph() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Must be called with every stripe held.
+    private void checkRep() {
+        assert IndexedGraph.adjacencyOk(forward, reverse) : "rep invariant violated";
+    }
+
+    // Must be called with the stripe of vertex held. Checks only around vertex
+    // even in RepChecks.FULL mode, since taking every stripe here could deadlock
+    // with a concurrent remove(); full checks happen in remove() and validate().
+    private void checkRep(L vertex) {
+        Map<L, Integer> targets = forward.get(vertex);
+        assert (targets == null) == (reverse.get(vertex) == null);
+    }
+
+    // Must be called with the stripes of source and target held. Checks only
+    // the one edge, even in RepChecks.FULL mode, for the same reason as checkRep(L).
+    private void checkEdge(L source, L target) {
+        Integer weight = forward.get(source).get(target);
+        assert weight == null || weight > 0;
+        assert weight == null ? reverse.get(target).get(source) == null : weight.equals(reverse.get(target).get(source));
+    }
+
+    /**
+     * Check the whole rep invariant of this graph, whether or not assertions
+     * are enabled. Blocks all mutations while it runs, and takes time
+     * proportional to the size of the graph.
+     * 
+     * @throws IllegalStateException if the rep invariant does not hold
+     */
+    public void validate() {
+        lockAll();
+        try {
+            if (!IndexedGraph.adjacencyOk(forward, reverse)) throw new IllegalStateException("rep invariant violated");
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private static int stripe(Object vertex) {
+        int h = vertex.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private void lock(L a, L b) {
+        int first = stripe(a);
+        int second = stripe(b);
+        locks[Math.min(first, second)].lock();
+        if (first != second) locks[Math.max(first, second)].lock();
+    }
+
+    private void unlock(L a, L b) {
+        int first = stripe(a);
+        int second = stripe(b);
+        if (first != second) locks[Math.max(first, second)].unlock();
+        locks[Math.min(first, second)].unlock();
+    }
+
+    // Must be called with the stripe of vertex held.
+    private boolean addLocked(L vertex) {
+        if (forward.containsKey(vertex)) {
+            return false;
+        }
+        reverse.put(vertex, new ConcurrentHashMap<>());
+        forward.put(vertex, new ConcurrentHashMap<>());
+        checkRep(vertex);
+        return true;
+    }
+
+    // Must be called with the stripes of source and target held.
+    private int setLocked(L source, L target, int weight) {
+        addLocked(source);
+        addLocked(target);
+        Integer previous;
+        if (weight == 0) {
+            previous = forward.get(source).remove(target);
+            reverse.get(target).remove(source);
+        } else {
+            previous = forward.get(source).put(target, weight);
+            reverse.get(target).put(source, weight);
+        }
+        checkEdge(source, target);
+        return previous == null ? 0 : previous;
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        if (forward.containsKey(vertex)) {
+            return false;
+        }
+        ReentrantLock lock = locks[stripe(vertex)];
+        lock.lock();
+        try {
+            return addLocked(vertex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        lock(source, target);
+        try {
+            return setLocked(source, target, weight);
+        } finally {
+            unlock(source, target);
+        }
+    }
+
+    @Override
+    public int increment(L source, L target, int delta) {
+        lock(source, target);
+        try {
+            Map<L, Integer> targets = forward.get(source);
+            Integer previous = targets == null ? null : targets.get(target);
+            int weight = previous == null ? 0 : previous;
+            setLocked(source, target, weight + delta);
+            return weight;
+        } finally {
+            unlock(source, target);
+        }
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        lockAll();
+        try {
+            Map<L, Integer> outgoing = forward.remove(vertex);
+            if (outgoing == null) {
+                return false;
+            }
+            Map<L, Integer> incoming = reverse.remove(vertex);
+            for (L target : outgoing.keySet()) {
+                Map<L, Integer> sources = reverse.get(target);
+                if (sources != null) sources.remove(vertex);
+            }
+            for (L source : incoming.keySet()) {
+                Map<L, Integer> targets = forward.get(source);
+                if (targets != null) targets.remove(vertex);
+            }
+            if (RepChecks.FULL) {
+                checkRep();
+            } else {
+                checkRep(vertex);
+            }
+            return true;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public Set<L> vertices() {
+        return Collections.unmodifiableSet(new HashSet<>(forward.keySet()));
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        Map<L, Integer> sources = reverse.get(target);
+        return sources == null ? new HashMap<>() : new HashMap<>(sources);
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        Map<L, Integer> targets = forward.get(source);
+        return targets == null ? new HashMap<>() : new HashMap<>(targets);
+    }
+
+    @Override
+    public void forEachSource(L target, NeighborConsumer<? super L> action) {
+        Map<L, Integer> sources = reverse.get(target);
+        if (sources == null) return;
+        for (Map.Entry<L, Integer> edge : sources.entrySet()) {
+            action.accept(edge.getKey(), edge.getValue());
+        }
+    }
+
+    @Override
+    public void forEachTarget(L source, NeighborConsumer<? super L> action) {
+        Map<L, Integer> targets = forward.get(source);
+        if (targets == null) return;
+        for (Map.Entry<L, Integer> edge : targets.entrySet()) {
+            action.accept(edge.getKey(), edge.getValue());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Vertices: " + forward.keySet() + ", Edges: " + forward;
+    }
+}
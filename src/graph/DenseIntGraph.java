@@ -0,0 +1,213 @@
+package graph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mutable weighted directed graph whose vertex labels are small
+ * nonnegative integers, used directly as indexes into its arrays.
+ *
+ * <p>Like {@link CompactGraph}, each vertex keeps its outgoing and incoming
+ * edges in open-addressing {@code int -> int} tables, but there is no label
+ * dictionary: finding a vertex is one array access rather than a hash lookup.
+ * Memory is proportional to the largest label ever added rather than to the
+ * number of vertices, about 8 bytes per unused label, so this backend suits
+ * labels that are dense in [0, n), such as IDs assigned by a counter.
+ */
+public class DenseIntGraph implements Graph<Integer> {
+
+    private final IntAdjacency adjacency;
+    private int size = 0;
+    private Set<Integer> vertices = null;
+
+    // Abstraction function:
+    //   represents adjacency, with each ID as its own label
+    // Representation invariant:
+    //   size is the number of vertices of adjacency
+    //   vertices is null or an unmodifiable set of exactly those vertices
+    // Safety from rep exposure:
+    //   all fields are private; sources() and targets() return fresh maps,
+    //   vertices() returns an unmodifiable snapshot that is never mutated, and
+    //   forEachSource() and forEachTarget() pass out only labels and
+    //   primitive weights
+
+    /** Make an empty graph. */
+    public DenseIntGraph() {
+        this(8);
+    }
+
+    /**
+     * Make an empty graph with room for labels below expectedBound without
+     * resizing.
+     *
+     * @param expectedBound expected exclusive upper bound on the labels, nonnegative
+     */
+    public DenseIntGraph(int expectedBound) {
+        if (expectedBound < 0) throw new IllegalArgumentException("bound must be nonnegative: " + expectedBound);
+        adjacency = new IntAdjacency(expectedBound);
+    }
+
+    // Checks the whole rep invariant, in time proportional to the largest label plus the number of edges.
+    private boolean repOk() {
+        if (!adjacency.repOk()) return false;
+        int live = 0;
+        for (int id = 0; id < adjacency.bound(); id++) {
+            if (adjacency.contains(id)) live++;
+        }
+        return live == size;
+    }
+
+    private void checkRep() {
+        assert repOk() : "rep invariant violated";
+    }
+
+    // Checks the part of the rep invariant about one label, in constant time.
+    private void checkRep(int id) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
+        }
+        adjacency.checkVertex(id);
+        assert size >= 0;
+    }
+
+    // Checks the new weight of one edge in both directions, unless full
+    // checks are on, in which case everything is checked.
+    private void checkEdge(int source, int target) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
+        }
+        adjacency.checkEdge(source, target);
+    }
+
+    /**
+     * Check the whole rep invariant of this graph, whether or not assertions
+     * are enabled. Takes time proportional to the largest label plus the
+     * number of edges.
+     *
+     * @throws IllegalStateException if the rep invariant does not hold
+     */
+    public void validate() {
+        if (!repOk()) throw new IllegalStateException("rep invariant violated");
+    }
+
+    private static int id(Integer label) {
+        int id = label;
+        if (id < 0) throw new IllegalArgumentException("labels must be nonnegative: " + id);
+        return id;
+    }
+
+    private int intern(Integer label) {
+        int id = id(label);
+        if (adjacency.add(id)) {
+            size++;
+            vertices = null;
+        }
+        checkRep(id);
+        return id;
+    }
+
+    /**
+     * @throws IllegalArgumentException if vertex is negative
+     */
+    @Override
+    public boolean add(Integer vertex) {
+        if (adjacency.contains(id(vertex))) {
+            return false;
+        }
+        intern(vertex);
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException if source or target is negative
+     */
+    @Override
+    public int set(Integer source, Integer target, int weight) {
+        int s = intern(source);
+        int t = intern(target);
+        int previous = adjacency.set(s, t, weight);
+        checkEdge(s, t);
+        return previous;
+    }
+
+    /**
+     * @throws IllegalArgumentException if source or target is negative
+     */
+    @Override
+    public int increment(Integer source, Integer target, int delta) {
+        int s = intern(source);
+        int t = intern(target);
+        int previous = adjacency.increment(s, t, delta);
+        checkEdge(s, t);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Integer vertex) {
+        int id = vertex;
+        if (!adjacency.contains(id)) {
+            return false;
+        }
+        adjacency.remove(id);
+        size--;
+        vertices = null;
+        checkRep(id);
+        return true;
+    }
+
+    @Override
+    public Set<Integer> vertices() {
+        if (vertices == null) {
+            Set<Integer> snapshot = new HashSet<>();
+            for (int id = 0; id < adjacency.bound(); id++) {
+                if (adjacency.contains(id)) snapshot.add(id);
+            }
+            vertices = Collections.unmodifiableSet(snapshot);
+        }
+        return vertices;
+    }
+
+    @Override
+    public Map<Integer, Integer> sources(Integer target) {
+        Map<Integer, Integer> map = new HashMap<>();
+        int id = target;
+        if (adjacency.contains(id)) adjacency.forEachSource(id, map::put);
+        return map;
+    }
+
+    @Override
+    public Map<Integer, Integer> targets(Integer source) {
+        Map<Integer, Integer> map = new HashMap<>();
+        int id = source;
+        if (adjacency.contains(id)) adjacency.forEachTarget(id, map::put);
+        return map;
+    }
+
+    @Override
+    public void forEachSource(Integer target, NeighborConsumer<? super Integer> action) {
+        int id = target;
+        if (adjacency.contains(id)) adjacency.forEachSource(id, action::accept);
+    }
+
+    @Override
+    public void forEachTarget(Integer source, NeighborConsumer<? super Integer> action) {
+        int id = source;
+        if (adjacency.contains(id)) adjacency.forEachTarget(id, action::accept);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder edges = new StringBuilder();
+        for (int id = 0; id < adjacency.bound(); id++) {
+            if (!adjacency.contains(id) || adjacency.outDegree(id) == 0) continue;
+            if (edges.length() > 0) edges.append(", ");
+            edges.append(id).append('=').append(targets(id));
+        }
+        return "Vertices: " + vertices() + ", Edges: {" + edges + "}";
+    }
+}
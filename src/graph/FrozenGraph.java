@@ -0,0 +1,387 @@
+package graph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of a weighted directed graph, laid out in compressed
+ * sparse row form for compact storage and fast concurrent reads.
+ *
+ * <p>Labels are interned to dense IDs, and the edges out of (and into) each
+ * vertex are one contiguous run of two parallel int arrays, neighbor IDs and
+ * weights, sorted by neighbor ID so that an edge is found by binary search.
+ * Since nothing is mutated after construction, any number of threads may
+ * share a snapshot without synchronization. {@link #sources(Object)} and
+ * {@link #targets(Object)} return unmodifiable views over the arrays rather
+ * than copies.
+ *
+ * <p>The targets of each vertex are iterated in the order the original
+ * graph's {@code targets} map listed them, so clients that break ties by
+ * iteration order, such as bridge-word search, behave the same on the
+ * snapshot as on the original.
+ *
+ * <p>Each run also has a permutation listing its edges from heaviest to
+ * lightest, so {@link #topTargets(Object, int)} and
+ * {@link #topSources(Object, int)} take time proportional to k rather than
+ * to the degree of the vertex, and {@link #heaviestTwoHop(Object, Object)}
+ * usually reads only the heaviest few edges of its two vertices. With the
+ * two permutations an edge costs 28 bytes in all.
+ *
+ * <p>All mutators throw {@link UnsupportedOperationException}.
+ */
+public final class FrozenGraph<L> implements Graph<L> {
+
+    private final LabelIndex<L> labels = new LabelIndex<>();
+    private final Set<L> vertices;
+    private final int[] outStart;
+    private final int[] outTargets;
+    private final int[] outWeights;
+    private final int[] outOrder;
+    private final int[] outByWeight;
+    private final int[] inStart;
+    private final int[] inSources;
+    private final int[] inWeights;
+    private final int[] inByWeight;
+
+    // Abstraction function:
+    //   represents the graph whose vertices are the labels in labels, with an
+    //   edge labels.label(s) -> labels.label(outTargets[i]) of weight outWeights[i]
+    //   for every s and every i in [outStart[s], outStart[s+1])
+    // Representation invariant:
+    //   labels assigns IDs 0..n-1 where n == vertices.size()
+    //   outStart and inStart have length n+1, start at 0, are non-decreasing,
+    //     and end at the number of edges
+    //   each run of outTargets (inSources) is strictly increasing
+    //   outOrder restricted to a run is a permutation of that run
+    //   outByWeight (inByWeight) restricted to a run is a permutation of that
+    //     run in order of decreasing weight, ties in iteration order
+    //   the in-runs hold exactly the reverse of the out-runs, with equal weights
+    //   all weights are positive
+    // Safety from rep exposure:
+    //   all fields are private, final, and never mutated after construction;
+    //   views and iterators expose only labels and boxed copies of weights
+    // Thread safety argument:
+    //   the snapshot is immutable and all fields are final, so it is safely
+    //   published by any reference to it
+
+    /**
+     * Make an immutable snapshot of a graph.
+     *
+     * @param graph graph to copy
+     * @return a snapshot with the same vertices and edges as graph
+     */
+    public static <L> FrozenGraph<L> of(Graph<L> graph) {
+        return graph instanceof FrozenGraph ? (FrozenGraph<L>) graph : new FrozenGraph<>(graph);
+    }
+
+    private FrozenGraph(Graph<L> graph) {
+        Set<L> labelSet = graph.vertices();
+        int n = labelSet.size();
+        for (L label : labelSet) {
+            labels.intern(label);
+        }
+        this.vertices = Collections.unmodifiableSet(new HashSet<>(labelSet));
+
+        CompressedRows rows = new CompressedRows(graph, labels);
+        outStart = rows.outStart;
+        outTargets = rows.outTargets;
+        outWeights = rows.outWeights;
+        outOrder = rows.outOrder;
+        inStart = rows.inStart;
+        inSources = rows.inSources;
+        inWeights = rows.inWeights;
+
+        int edges = rows.edges();
+        long[] scratch = new long[edges];
+        outByWeight = new int[edges];
+        inByWeight = new int[edges];
+        for (int id = 0; id < n; id++) {
+            sortByWeight(outWeights, outOrder, outStart[id], outStart[id + 1], scratch, outByWeight);
+            sortByWeight(inWeights, null, inStart[id], inStart[id + 1], scratch, inByWeight);
+        }
+        checkRep();
+    }
+
+    // Fills byWeight[from..to) with the indexes of the run [from, to) in
+    // order of decreasing weight, ties in iteration order, which is given by
+    // order[from..to) if order is non-null.
+    private static void sortByWeight(int[] weights, int[] order, int from, int to, long[] scratch, int[] byWeight) {
+        for (int rank = 0; rank < to - from; rank++) {
+            int i = order == null ? from + rank : order[from + rank];
+            scratch[from + rank] = ((long) (Integer.MAX_VALUE - weights[i]) << 32) | rank;
+        }
+        Arrays.sort(scratch, from, to);
+        for (int i = from; i < to; i++) {
+            int rank = (int) scratch[i];
+            byWeight[i] = order == null ? from + rank : order[from + rank];
+        }
+    }
+
+    private void checkRep() {
+        assert labels.size() == vertices.size() && labels.limit() == vertices.size();
+        assert outStart[vertices.size()] == outTargets.length;
+        assert inStart[vertices.size()] == inSources.length;
+    }
+
+    /** @return this snapshot, which is already immutable */
+    @Override
+    public FrozenGraph<L> freeze() {
+        return this;
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        throw new UnsupportedOperationException("frozen graph cannot be mutated");
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        throw new UnsupportedOperationException("frozen graph cannot be mutated");
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        throw new UnsupportedOperationException("frozen graph cannot be mutated");
+    }
+
+    @Override
+    public Set<L> vertices() {
+        return vertices;
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        int id = labels.id(target);
+        if (id < 0) return Collections.emptyMap();
+        return new Neighbors(inSources, inWeights, null, inStart[id], inStart[id + 1]);
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        int id = labels.id(source);
+        if (id < 0) return Collections.emptyMap();
+        return new Neighbors(outTargets, outWeights, outOrder, outStart[id], outStart[id + 1]);
+    }
+
+    @Override
+    public void forEachSource(L target, NeighborConsumer<? super L> action) {
+        int id = labels.id(target);
+        if (id < 0) return;
+        for (int i = inStart[id]; i < inStart[id + 1]; i++) {
+            action.accept(labels.label(inSources[i]), inWeights[i]);
+        }
+    }
+
+    @Override
+    public void forEachTarget(L source, NeighborConsumer<? super L> action) {
+        int id = labels.id(source);
+        if (id < 0) return;
+        for (int i = outStart[id]; i < outStart[id + 1]; i++) {
+            int slot = outOrder[i];
+            action.accept(labels.label(outTargets[slot]), outWeights[slot]);
+        }
+    }
+
+    @Override
+    public Map<L, Integer> topTargets(L source, int k) {
+        int id = labels.id(source);
+        return id < 0 ? top(null, null, null, 0, 0, k) : top(outTargets, outWeights, outByWeight, outStart[id], outStart[id + 1], k);
+    }
+
+    @Override
+    public Map<L, Integer> topSources(L target, int k) {
+        int id = labels.id(target);
+        return id < 0 ? top(null, null, null, 0, 0, k) : top(inSources, inWeights, inByWeight, inStart[id], inStart[id + 1], k);
+    }
+
+    private Map<L, Integer> top(int[] neighbors, int[] weights, int[] byWeight, int from, int to, int k) {
+        if (k < 0) throw new IllegalArgumentException("k must be nonnegative: " + k);
+        Map<L, Integer> top = new LinkedHashMap<>();
+        for (int i = from; i < from + Math.min(k, to - from); i++) {
+            top.put(labels.label(neighbors[byWeight[i]]), weights[byWeight[i]]);
+        }
+        return top;
+    }
+
+    /**
+     * @param source a label
+     * @param target a label
+     * @return the weight of the edge from source to target, or 0 if there is none
+     */
+    public int weight(L source, L target) {
+        int s = labels.id(source);
+        int t = labels.id(target);
+        if (s < 0 || t < 0) return 0;
+        int i = Arrays.binarySearch(outTargets, outStart[s], outStart[s + 1], t);
+        return i < 0 ? 0 : outWeights[i];
+    }
+
+    /**
+     * Find the middle of the heaviest path of two edges from source to target.
+     *
+     * <p>Reads the edges out of source and into target alternately from
+     * heaviest to lightest, finding the other edge of each path by binary
+     * search, and stops once no path not yet seen can be as heavy as the
+     * heaviest seen, so a query usually reads only the heaviest few edges of
+     * each vertex and allocates nothing, whatever their degrees.
+     *
+     * @param source a label
+     * @param target a label
+     * @return the vertex m that maximizes weight(source, m) + weight(m, target)
+     *         over the vertices with both edges, the first such in the
+     *         iteration order of targets(source) if several tie, or null if
+     *         there is none
+     */
+    public L heaviestTwoHop(L source, L target) {
+        int s = labels.id(source);
+        int t = labels.id(target);
+        if (s < 0 || t < 0) return null;
+        int outFrom = outStart[s];
+        int outTo = outStart[s + 1];
+        int inFrom = inStart[t];
+        int inTo = inStart[t + 1];
+        if (outFrom == outTo || inFrom == inTo) return null;
+
+        // a path not yet read from either list weighs at most lastOut + lastIn
+        long lastOut = outWeights[outByWeight[outFrom]];
+        long lastIn = inWeights[inByWeight[inFrom]];
+        long best = 0;
+        int bestEdge = -1;
+        // out-edges of other paths as heavy as best, in no particular order
+        int[] tied = null;
+        int ties = 0;
+        int nextOut = outFrom;
+        int nextIn = inFrom;
+        boolean readOut = true;
+        // stop only when best beats the bound, so that every tie is read
+        while (nextOut < outTo && nextIn < inTo && best <= lastOut + lastIn) {
+            int edge;
+            long path;
+            if (readOut) {
+                edge = outByWeight[nextOut++];
+                lastOut = outWeights[edge];
+                int in = Arrays.binarySearch(inSources, inFrom, inTo, outTargets[edge]);
+                path = in < 0 ? -1 : lastOut + inWeights[in];
+            } else {
+                int in = inByWeight[nextIn++];
+                lastIn = inWeights[in];
+                edge = Arrays.binarySearch(outTargets, outFrom, outTo, inSources[in]);
+                path = edge < 0 ? -1 : outWeights[edge] + lastIn;
+            }
+            readOut = !readOut;
+            if (path > best) {
+                best = path;
+                bestEdge = edge;
+                ties = 0;
+            } else if (path == best && edge != bestEdge) {
+                if (tied == null || ties == tied.length) {
+                    tied = tied == null ? new int[4] : Arrays.copyOf(tied, 2 * ties);
+                }
+                tied[ties++] = edge;
+            }
+        }
+        if (bestEdge < 0) return null;
+        if (ties == 0) return labels.label(outTargets[bestEdge]);
+
+        // break the tie by iteration order, which outOrder gives
+        Arrays.sort(tied, 0, ties);
+        for (int position = outFrom; position < outTo; position++) {
+            int edge = outOrder[position];
+            if (edge == bestEdge || Arrays.binarySearch(tied, 0, ties, edge) >= 0) {
+                return labels.label(outTargets[edge]);
+            }
+        }
+        throw new AssertionError("tied edges are in the run");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder edges = new StringBuilder();
+        for (int id = 0; id < vertices.size(); id++) {
+            if (outStart[id] == outStart[id + 1]) continue;
+            if (edges.length() > 0) edges.append(", ");
+            edges.append(labels.label(id)).append('=').append(targets(labels.label(id)));
+        }
+        return "Vertices: " + vertices + ", Edges: {" + edges + "}";
+    }
+
+    /**
+     * An unmodifiable map view of one run of neighbor IDs and weights.
+     */
+    private final class Neighbors extends AbstractMap<L, Integer> {
+        private final int[] neighbors;
+        private final int[] weights;
+        private final int[] order;
+        private final int from;
+        private final int to;
+
+        // Views neighbors[from..to) and weights[from..to), iterated in the
+        // order given by order[from..to) if order is non-null.
+        private Neighbors(int[] neighbors, int[] weights, int[] order, int from, int to) {
+            this.neighbors = neighbors;
+            this.weights = weights;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        private int find(Object key) {
+            int id = labels.id(key);
+            return id < 0 ? -1 : Arrays.binarySearch(neighbors, from, to, id);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) >= 0;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            int i = find(key);
+            return i < 0 ? null : weights[i];
+        }
+
+        @Override
+        public Set<Map.Entry<L, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<L, Integer>>() {
+                @Override
+                public int size() {
+                    return to - from;
+                }
+
+                @Override
+                public Iterator<Map.Entry<L, Integer>> iterator() {
+                    return new Iterator<Map.Entry<L, Integer>>() {
+                        private int next = from;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < to;
+                        }
+
+                        @Override
+                        public Map.Entry<L, Integer> next() {
+                            if (next >= to) throw new NoSuchElementException();
+                            int i = order == null ? next : order[next];
+                            next++;
+                            return new AbstractMap.SimpleImmutableEntry<>(labels.label(neighbors[i]), weights[i]);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -6,7 +6,54 @@ import java.util.Set;
 public interface Graph<L> {
 
     public static <L> Graph<L> empty() {
-        return (Graph<L>) new ConcreteEdgesGraph();
+        return new IndexedGraph<>();
+    }
+
+    /**
+     * Make an empty graph from the backend that suits the hints best, as
+     * described in {@link GraphHints}. Hints about label types are ignored;
+     * use {@link #empty(Class, GraphHints)} to give them.
+     * 
+     * @param hints how the graph will be used
+     * @return a new empty mutable graph
+     */
+    public static <L> Graph<L> empty(GraphHints hints) {
+        return hints.newGraph(null);
+    }
+
+    /**
+     * Make an empty graph from the backend that suits the label type and
+     * hints best, as described in {@link GraphHints}.
+     * 
+     * @param labelType class of the labels
+     * @param hints how the graph will be used
+     * @return a new empty mutable graph
+     */
+    public static <L> Graph<L> empty(Class<L> labelType, GraphHints hints) {
+        return hints.newGraph(labelType);
+    }
+
+    /**
+     * Start building a graph in bulk, with edge weights summed as they are
+     * added. Faster than adding edges to a graph one by one when most edges
+     * are added more than once or there are many of them.
+     * 
+     * @return a builder with small initial storage
+     */
+    public static <L> GraphBuilder<L> builder() {
+        return new GraphBuilder<>(0, 0);
+    }
+
+    /**
+     * Start building a graph in bulk, with storage pre-sized for the expected
+     * numbers of distinct vertices and edges.
+     * 
+     * @param expectedVertices number of distinct vertices expected, nonnegative
+     * @param expectedEdges number of distinct edges expected, nonnegative
+     * @return a builder with storage for a graph of that size
+     */
+    public static <L> GraphBuilder<L> builder(int expectedVertices, int expectedEdges) {
+        return new GraphBuilder<>(expectedVertices, expectedEdges);
     }
     
     public boolean add(L vertex);
@@ -15,4 +62,99 @@ public interface Graph<L> {
     public Set<L> vertices();
     public Map<L, Integer> sources(L target);
     public Map<L, Integer> targets(L source);
+
+    /**
+     * Add delta to the weight of an edge, as one atomic step in graphs that
+     * support concurrent mutation. Equivalent to
+     * {@code set(source, target, weight + delta)} where weight is the current
+     * weight of the edge, or 0 if there is none.
+     * 
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @param delta amount to add; the resulting weight must be nonnegative
+     * @return the previous weight of the edge, or 0 if there was none
+     */
+    public default int increment(L source, L target, int delta) {
+        int previous = targets(source).getOrDefault(target, 0);
+        set(source, target, previous + delta);
+        return previous;
+    }
+
+    /**
+     * Call action once for every edge into target, without copying the
+     * graph's adjacency. The graph must not be mutated during the call.
+     * 
+     * @param target a label
+     * @param action called with the source and weight of each edge into target
+     */
+    public default void forEachSource(L target, NeighborConsumer<? super L> action) {
+        for (Map.Entry<L, Integer> edge : sources(target).entrySet()) {
+            action.accept(edge.getKey(), edge.getValue());
+        }
+    }
+
+    /**
+     * Call action once for every edge out of source, without copying the
+     * graph's adjacency. The graph must not be mutated during the call.
+     * 
+     * @param source a label
+     * @param action called with the target and weight of each edge out of source
+     */
+    public default void forEachTarget(L source, NeighborConsumer<? super L> action) {
+        for (Map.Entry<L, Integer> edge : targets(source).entrySet()) {
+            action.accept(edge.getKey(), edge.getValue());
+        }
+    }
+
+    /**
+     * Get the heaviest edges out of a vertex. Backends that keep adjacency
+     * sorted by weight answer in time proportional to k; the default sorts
+     * all of targets(source).
+     * 
+     * @param source label of the source vertex
+     * @param k maximum number of targets to return, nonnegative
+     * @return the min(k, out-degree) targets of source with the greatest
+     *         weights, mapped to those weights, iterated from greatest weight
+     *         to least, with targets of equal weight in the order that
+     *         targets(source) iterates them
+     */
+    public default Map<L, Integer> topTargets(L source, int k) {
+        return Weights.top(targets(source), k);
+    }
+
+    /**
+     * Get the heaviest edges into a vertex. Backends that keep adjacency
+     * sorted by weight answer in time proportional to k; the default sorts
+     * all of sources(target).
+     * 
+     * @param target label of the target vertex
+     * @param k maximum number of sources to return, nonnegative
+     * @return the min(k, in-degree) sources of target with the greatest
+     *         weights, mapped to those weights, iterated from greatest weight
+     *         to least, with sources of equal weight in the order that
+     *         sources(target) iterates them
+     */
+    public default Map<L, Integer> topSources(L target, int k) {
+        return Weights.top(sources(target), k);
+    }
+
+    /**
+     * Make an immutable snapshot of this graph that any number of threads can
+     * read without synchronization. Later mutations of this graph do not
+     * affect the snapshot, and mutating the snapshot throws
+     * UnsupportedOperationException.
+     * 
+     * @return a frozen copy of this graph
+     */
+    public default Graph<L> freeze() {
+        return FrozenGraph.of(this);
+    }
+
+    /**
+     * An action on one neighbor of a vertex, taking the weight unboxed.
+     */
+    @FunctionalInterface
+    public interface NeighborConsumer<L> {
+        public void accept(L neighbor, int weight);
+    }
 }
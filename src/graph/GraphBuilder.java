@@ -0,0 +1,240 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a weighted directed graph from a bulk of edges at once, rather than
+ * by one mutation of a graph per edge.
+ *
+ * <p>Edges are gathered in primitive arrays pre-sized from the expected
+ * numbers of vertices and edges: labels are interned to dense int IDs once,
+ * and each edge is keyed by its pair of IDs in an open-addressing table of
+ * longs, so that repeated edges are summed in place and no weight is boxed
+ * until the graph is built. {@link #build()} then counts the degree of every
+ * vertex and fills adjacency maps sized exactly for them, without rehashing,
+ * so building takes time linear in the number of edges added.
+ *
+ * <p>A builder builds one graph. Not safe for concurrent use.
+ */
+public final class GraphBuilder<L> {
+
+    private static final long EMPTY = -1;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private LabelIndex<L> labels;
+    private long[] keys;
+    private int[] weights;
+    private int size = 0;
+    private int shift;
+
+    // Abstraction function:
+    //   represents the graph under construction whose vertices are the labels
+    //   in labels, and which has an edge labels.label(s) -> labels.label(t)
+    //   of weight w iff some slot i has keys[i] == (s << 32 | t) and
+    //   weights[i] == w; or, once keys == null, a builder that has built its graph
+    // Representation invariant:
+    //   labels, keys and weights are all null or all non-null
+    //   keys.length == weights.length == 2^(64 - shift), a power of two
+    //   size == number of non-EMPTY keys, and size <= 3/4 of keys.length
+    //   every non-EMPTY key is distinct, made of the IDs of two labels in
+    //     labels, has a positive weight, and is reachable by linear probing
+    //     from its home slot without crossing an EMPTY slot
+    // Safety from rep exposure:
+    //   all fields are private and the arrays are never returned; build()
+    //   returns maps that the builder no longer references
+
+    /**
+     * Make a builder for a graph of about the given size. The estimates only
+     * size the builder's storage; a graph of any size can be built.
+     *
+     * @param expectedVertices number of distinct vertices expected, nonnegative
+     * @param expectedEdges number of distinct edges expected, nonnegative
+     */
+    GraphBuilder(int expectedVertices, int expectedEdges) {
+        if (expectedVertices < 0 || expectedEdges < 0) {
+            throw new IllegalArgumentException("expected sizes must be nonnegative: " + expectedVertices + ", " + expectedEdges);
+        }
+        labels = new LabelIndex<>(expectedVertices);
+        allocate(capacityFor(expectedEdges));
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = 4;
+        while (capacity - (capacity >>> 2) < size && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        weights = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        shift = Long.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    private int home(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int slot = home(key); ; slot = (slot + 1) & mask) {
+            long k = keys[slot];
+            if (k == key) return slot;
+            if (k == EMPTY) return -1 - slot;
+        }
+    }
+
+    private void checkRep() {
+        assert keys == null || (size <= keys.length - (keys.length >>> 2) && keys.length == weights.length);
+    }
+
+    private void checkOpen() {
+        if (keys == null) throw new IllegalStateException("graph already built");
+    }
+
+    /**
+     * Add a vertex, if it is not already in the graph.
+     *
+     * @param vertex label of the vertex
+     * @return this builder
+     * @throws IllegalStateException if the graph has already been built
+     */
+    public GraphBuilder<L> add(L vertex) {
+        checkOpen();
+        labels.intern(vertex);
+        return this;
+    }
+
+    /**
+     * Add weight to the edge from source to target, adding the vertices if
+     * they are not already in the graph. Adding the same edge more than once
+     * sums its weights; a weight of 0 adds only the vertices.
+     *
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @param weight weight to add, nonnegative
+     * @return this builder
+     * @throws IllegalArgumentException if weight is negative
+     * @throws ArithmeticException if the summed weight of the edge overflows an int
+     * @throws IllegalStateException if the graph has already been built
+     */
+    public GraphBuilder<L> add(L source, L target, int weight) {
+        checkOpen();
+        if (weight < 0) throw new IllegalArgumentException("weight must be nonnegative: " + weight);
+        long key = (long) labels.intern(source) << 32 | labels.intern(target);
+        if (weight == 0) return this;
+        int slot = find(key);
+        if (slot >= 0) {
+            weights[slot] = Math.addExact(weights[slot], weight);
+            return this;
+        }
+        if (size + 1 > keys.length - (keys.length >>> 2)) {
+            if (keys.length == MAX_CAPACITY) throw new IllegalStateException("too many edges: " + size);
+            rehash(keys.length << 1);
+            slot = find(key);
+        }
+        slot = -1 - slot;
+        keys[slot] = key;
+        weights[slot] = weight;
+        size++;
+        return this;
+    }
+
+    /**
+     * Add every edge of an adjacency map, as {@link #add(Object, Object, int)} does.
+     *
+     * @param edges map from each source to a map from its targets to the
+     *              weights to add, all nonnegative
+     * @return this builder
+     * @throws IllegalArgumentException if any weight is negative
+     * @throws ArithmeticException if the summed weight of an edge overflows an int
+     * @throws IllegalStateException if the graph has already been built
+     */
+    public GraphBuilder<L> addAll(Map<? extends L, ? extends Map<? extends L, Integer>> edges) {
+        for (Map.Entry<? extends L, ? extends Map<? extends L, Integer>> row : edges.entrySet()) {
+            add(row.getKey());
+            for (Map.Entry<? extends L, Integer> edge : row.getValue().entrySet()) {
+                add(row.getKey(), edge.getKey(), edge.getValue());
+            }
+        }
+        return this;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldWeights = weights;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = -1 - find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                weights[slot] = oldWeights[i];
+            }
+        }
+        checkRep();
+    }
+
+    /**
+     * Build the graph of every vertex and edge added. The builder's storage
+     * is released, and it cannot be used again.
+     *
+     * @return a new mutable graph with those vertices and edges
+     * @throws IllegalStateException if the graph has already been built
+     */
+    public Graph<L> build() {
+        checkOpen();
+        int n = labels.limit();
+        int[] outDegree = new int[n];
+        int[] inDegree = new int[n];
+        for (long key : keys) {
+            if (key == EMPTY) continue;
+            outDegree[(int) (key >>> 32)]++;
+            inDegree[(int) key]++;
+        }
+
+        Map<L, Map<L, Integer>> forward = new HashMap<>(mapCapacity(n));
+        Map<L, Map<L, Integer>> reverse = new HashMap<>(mapCapacity(n));
+        List<Map<L, Integer>> outgoing = new ArrayList<>(n);
+        List<Map<L, Integer>> incoming = new ArrayList<>(n);
+        for (int id = 0; id < n; id++) {
+            Map<L, Integer> targets = new HashMap<>(mapCapacity(outDegree[id]));
+            Map<L, Integer> sources = new HashMap<>(mapCapacity(inDegree[id]));
+            forward.put(labels.label(id), targets);
+            reverse.put(labels.label(id), sources);
+            outgoing.add(targets);
+            incoming.add(sources);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            long key = keys[slot];
+            if (key == EMPTY) continue;
+            int source = (int) (key >>> 32);
+            int target = (int) key;
+            // box each weight once, for both directions
+            Integer weight = weights[slot];
+            outgoing.get(source).put(labels.label(target), weight);
+            incoming.get(target).put(labels.label(source), weight);
+        }
+
+        labels = null;
+        keys = null;
+        weights = null;
+        checkRep();
+        return new IndexedGraph<>(forward, reverse);
+    }
+
+    // Initial capacity of a hash map that holds size entries without resizing.
+    private static int mapCapacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    @Override
+    public String toString() {
+        return keys == null ? "GraphBuilder (built)" : "GraphBuilder with " + labels.size() + " vertices and " + size + " edges";
+    }
+}
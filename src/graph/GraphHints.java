@@ -0,0 +1,151 @@
+package graph;
+
+/**
+ * Hints about how a graph will be used, from which
+ * {@link Graph#empty(Class, GraphHints)} chooses a backend. Hints never change
+ * what a graph does, only how fast it does it and how much memory it takes.
+ *
+ * <p>Backends are chosen as follows:
+ * <ul>
+ * <li>for concurrent mutation, {@link ConcurrentGraph}, the only backend
+ *     that is safe for it;
+ * <li>for graphs hinted to be kept off the heap, {@link OffHeapGraph};
+ * <li>for Integer labels hinted to be dense in [0, bound),
+ *     {@link DenseIntGraph}, which indexes arrays by label;
+ * <li>for write-heavy use, {@link CompactGraph}, which updates edges without
+ *     boxing, and likewise for graphs expected to have at least
+ *     {@value #COMPACT_EDGES} edges unless read-heavy, where its smaller
+ *     footprint matters most;
+ * <li>otherwise {@link IndexedGraph}, whose hash-map adjacency is fastest
+ *     to copy out of sources() and targets().
+ * </ul>
+ * A graph that will no longer be mutated is best {@link Graph#freeze() frozen}.
+ *
+ * <p>GraphHints is immutable: each method returns new hints.
+ */
+public final class GraphHints {
+
+    /** How a graph is expected to divide its time between queries and mutations. */
+    public enum Access { BALANCED, READ_HEAVY, WRITE_HEAVY }
+
+    /** Expected number of edges from which balanced graphs use CompactGraph. */
+    public static final long COMPACT_EDGES = 1 << 20;
+
+    private static final GraphHints NONE = new GraphHints(0, 0, Access.BALANCED, false, false, 0);
+
+    private final int expectedVertices;
+    private final long expectedEdges;
+    private final Access access;
+    private final boolean concurrent;
+    private final boolean offHeap;
+    private final int denseIntBound;
+
+    // Abstraction function:
+    //   represents the hints that a graph will have about expectedVertices
+    //   vertices and expectedEdges edges (0 if unknown), be used with the
+    //   given access pattern, be mutated concurrently iff concurrent, be
+    //   kept off the heap iff offHeap, and, if
+    //   denseIntBound > 0, have Integer labels in [0, denseIntBound)
+    // Representation invariant:
+    //   expectedVertices, expectedEdges, denseIntBound >= 0; access != null
+    // Safety from rep exposure:
+    //   all fields are private, final and immutable
+
+    private GraphHints(int expectedVertices, long expectedEdges, Access access, boolean concurrent, boolean offHeap, int denseIntBound) {
+        this.expectedVertices = expectedVertices;
+        this.expectedEdges = expectedEdges;
+        this.access = access;
+        this.concurrent = concurrent;
+        this.offHeap = offHeap;
+        this.denseIntBound = denseIntBound;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert expectedVertices >= 0 && expectedEdges >= 0 && denseIntBound >= 0 && access != null;
+    }
+
+    /** @return hints that say nothing, for which the default backend is chosen */
+    public static GraphHints none() {
+        return NONE;
+    }
+
+    /**
+     * @param vertices expected number of vertices, nonnegative
+     * @param edges expected number of edges, nonnegative
+     * @return these hints, with the expected size of the graph
+     */
+    public GraphHints expectedSize(int vertices, long edges) {
+        if (vertices < 0 || edges < 0) throw new IllegalArgumentException("sizes must be nonnegative: " + vertices + ", " + edges);
+        return new GraphHints(vertices, edges, access, concurrent, offHeap, denseIntBound);
+    }
+
+    /**
+     * @param access expected access pattern
+     * @return these hints, with that access pattern
+     */
+    public GraphHints access(Access access) {
+        if (access == null) throw new NullPointerException("access");
+        return new GraphHints(expectedVertices, expectedEdges, access, concurrent, offHeap, denseIntBound);
+    }
+
+    /** @return these hints, for a graph that several threads mutate at once */
+    public GraphHints concurrent() {
+        return new GraphHints(expectedVertices, expectedEdges, access, true, offHeap, denseIntBound);
+    }
+
+    /**
+     * Hint that the graph is too large for the heap, or that garbage
+     * collection should not have to scan its edges. Ignored for concurrent
+     * graphs.
+     *
+     * @return these hints, for a graph whose adjacency is kept off the heap
+     */
+    public GraphHints offHeap() {
+        return new GraphHints(expectedVertices, expectedEdges, access, concurrent, true, denseIntBound);
+    }
+
+    /**
+     * Hint that labels are Integers in [0, bound), most of which are used.
+     * Ignored unless the label type is Integer. A dense graph rejects
+     * negative labels, so the hint must only be given for labels that are
+     * never negative.
+     *
+     * @param bound exclusive upper bound on the labels, positive
+     * @return these hints, with dense integer labels
+     */
+    public GraphHints denseIntLabels(int bound) {
+        if (bound <= 0) throw new IllegalArgumentException("bound must be positive: " + bound);
+        return new GraphHints(expectedVertices, expectedEdges, access, concurrent, offHeap, bound);
+    }
+
+    /**
+     * @param labelType class of the labels, or null if unknown, in which case
+     *                  the dense integer hint is ignored
+     * @return a new empty graph from the backend these hints choose
+     */
+    <L> Graph<L> newGraph(Class<L> labelType) {
+        if (concurrent) {
+            return new ConcurrentGraph<>();
+        }
+        if (offHeap) {
+            return new OffHeapGraph<>();
+        }
+        if (denseIntBound > 0 && labelType == Integer.class) {
+            // checked: L is Integer
+            @SuppressWarnings("unchecked")
+            Graph<L> dense = (Graph<L>) (Graph<?>) new DenseIntGraph(denseIntBound);
+            return dense;
+        }
+        if (access == Access.WRITE_HEAVY || (access == Access.BALANCED && expectedEdges >= COMPACT_EDGES)) {
+            return new CompactGraph<>(expectedVertices);
+        }
+        return new IndexedGraph<>(expectedVertices);
+    }
+
+    @Override
+    public String toString() {
+        return "GraphHints(vertices=" + expectedVertices + ", edges=" + expectedEdges + ", access=" + access
+                + ", concurrent=" + concurrent + ", offHeap=" + offHeap + (denseIntBound > 0 ? ", denseIntBound=" + denseIntBound : "") + ")";
+    }
+}
@@ -0,0 +1,208 @@
+package graph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mutable weighted directed graph that indexes every vertex's outgoing and
+ * incoming edges in hash maps, so that edge updates and neighbor queries cost
+ * time proportional to the degree of the vertices involved rather than to the
+ * size of the whole graph.
+ */
+public class IndexedGraph<L> implements Graph<L> {
+
+    private final Map<L, Map<L, Integer>> forward;
+    private final Map<L, Map<L, Integer>> reverse;
+    private Set<L> vertices = null;
+
+    // Abstraction function:
+    //   represents the graph whose vertices are forward.keySet() and which has an
+    //   edge source -> target of weight w iff forward.get(source).get(target) == w
+    // Representation invariant:
+    //   forward.keySet().equals(reverse.keySet())
+    //   forward.get(s).get(t) == reverse.get(t).get(s) for every edge, and
+    //     every key of an inner map is itself a vertex
+    //   all weights are positive
+    //   vertices is null or an unmodifiable copy of forward.keySet()
+    // Safety from rep exposure:
+    //   all fields are private; sources() and targets() return fresh copies of
+    //   the inner maps, vertices() returns an unmodifiable snapshot that is
+    //   never mutated, and forEachSource() and forEachTarget() pass out only
+    //   labels and unboxed weights
+
+    // Checks that forward and reverse adjacency maps describe the same graph
+    // with positive weights, in time proportional to the size of the graph.
+    static <L> boolean adjacencyOk(Map<L, Map<L, Integer>> forward, Map<L, Map<L, Integer>> reverse) {
+        if (!forward.keySet().equals(reverse.keySet())) return false;
+        int edges = 0;
+        for (Map.Entry<L, Map<L, Integer>> row : forward.entrySet()) {
+            for (Map.Entry<L, Integer> edge : row.getValue().entrySet()) {
+                if (edge.getValue() <= 0) return false;
+                Map<L, Integer> sources = reverse.get(edge.getKey());
+                if (sources == null || !edge.getValue().equals(sources.get(row.getKey()))) return false;
+                edges++;
+            }
+        }
+        for (Map<L, Integer> sources : reverse.values()) {
+            edges -= sources.size();
+        }
+        return edges == 0;
+    }
+
+    private void checkRep() {
+        assert adjacencyOk(forward, reverse) : "rep invariant violated";
+    }
+
+    /** Make an empty graph. */
+    public IndexedGraph() {
+        this(new HashMap<>(), new HashMap<>());
+    }
+
+    // Make an empty graph with room for expectedVertices vertices without resizing.
+    IndexedGraph(int expectedVertices) {
+        this(new HashMap<>((int) (expectedVertices / 0.75f) + 1), new HashMap<>((int) (expectedVertices / 0.75f) + 1));
+    }
+
+    // Make a graph from adjacency maps built elsewhere in the package, which
+    // must satisfy the rep invariant and are owned by the graph from now on.
+    IndexedGraph(Map<L, Map<L, Integer>> forward, Map<L, Map<L, Integer>> reverse) {
+        this.forward = forward;
+        this.reverse = reverse;
+        checkRep();
+    }
+
+    // Checks the part of the rep invariant about one vertex, in constant time,
+    // so that mutations stay proportional to the degrees they touch.
+    private void checkRep(L vertex) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
+        }
+        assert forward.containsKey(vertex) == reverse.containsKey(vertex);
+    }
+
+    // Checks the part of the rep invariant about one edge, in constant time.
+    private void checkEdge(L source, L target) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
+        }
+        Integer weight = forward.get(source).get(target);
+        assert weight == null || weight > 0;
+        assert weight == null ? reverse.get(target).get(source) == null : weight.equals(reverse.get(target).get(source));
+    }
+
+    /**
+     * Check the whole rep invariant of this graph, whether or not assertions
+     * are enabled. Takes time proportional to the size of the graph.
+     * 
+     * @throws IllegalStateException if the rep invariant does not hold
+     */
+    public void validate() {
+        if (!adjacencyOk(forward, reverse)) throw new IllegalStateException("rep invariant violated");
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        if (forward.containsKey(vertex)) {
+            return false;
+        }
+        forward.put(vertex, new HashMap<>());
+        reverse.put(vertex, new HashMap<>());
+        vertices = null;
+        checkRep(vertex);
+        return true;
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        add(source);
+        add(target);
+
+        Integer previous;
+        if (weight == 0) {
+            previous = forward.get(source).remove(target);
+            reverse.get(target).remove(source);
+        } else {
+            previous = forward.get(source).put(target, weight);
+            reverse.get(target).put(source, weight);
+        }
+        checkEdge(source, target);
+        return previous == null ? 0 : previous;
+    }
+
+    @Override
+    public int increment(L source, L target, int delta) {
+        Map<L, Integer> targets = forward.get(source);
+        Integer previous = targets == null ? null : targets.get(target);
+        int weight = previous == null ? 0 : previous;
+        set(source, target, weight + delta);
+        return weight;
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        Map<L, Integer> outgoing = forward.remove(vertex);
+        if (outgoing == null) {
+            return false;
+        }
+        Map<L, Integer> incoming = reverse.remove(vertex);
+        vertices = null;
+        for (L target : outgoing.keySet()) {
+            Map<L, Integer> sources = reverse.get(target);
+            if (sources != null) sources.remove(vertex);
+        }
+        for (L source : incoming.keySet()) {
+            Map<L, Integer> targets = forward.get(source);
+            if (targets != null) targets.remove(vertex);
+        }
+        checkRep(vertex);
+        return true;
+    }
+
+    @Override
+    public Set<L> vertices() {
+        if (vertices == null) {
+            vertices = Collections.unmodifiableSet(new HashSet<>(forward.keySet()));
+        }
+        return vertices;
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        Map<L, Integer> sources = reverse.get(target);
+        return sources == null ? new HashMap<>() : new HashMap<>(sources);
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        Map<L, Integer> targets = forward.get(source);
+        return targets == null ? new HashMap<>() : new HashMap<>(targets);
+    }
+
+    @Override
+    public void forEachSource(L target, NeighborConsumer<? super L> action) {
+        Map<L, Integer> sources = reverse.get(target);
+        if (sources == null) return;
+        for (Map.Entry<L, Integer> edge : sources.entrySet()) {
+            action.accept(edge.getKey(), edge.getValue());
+        }
+    }
+
+    @Override
+    public void forEachTarget(L source, NeighborConsumer<? super L> action) {
+        Map<L, Integer> targets = forward.get(source);
+        if (targets == null) return;
+        for (Map.Entry<L, Integer> edge : targets.entrySet()) {
+            action.accept(edge.getKey(), edge.getValue());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Vertices: " + forward.keySet() + ", Edges: " + forward;
+    }
+}
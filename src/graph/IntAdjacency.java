@@ -0,0 +1,216 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * The adjacency of a graph whose vertices are nonnegative int IDs: each
+ * vertex has an {@link IntIntTable} of its outgoing edges and one of its
+ * incoming edges, from neighbor ID to weight, found by indexing an array with
+ * its ID. {@link CompactGraph} and {@link DenseIntGraph} keep their edges in
+ * one of these, and differ only in how they turn labels into IDs.
+ *
+ * <p>Edge methods require both of their vertices to be present. Not safe for
+ * concurrent use.
+ */
+final class IntAdjacency {
+
+    private static final int INITIAL_DEGREE = 2;
+
+    private IntIntTable[] outgoing;
+    private IntIntTable[] incoming;
+
+    // Abstraction function:
+    //   represents the graph whose vertices are the ids with outgoing[id] != null,
+    //   and which has an edge s -> t of weight w iff outgoing[s].get(t) == w != 0
+    // Representation invariant:
+    //   outgoing.length == incoming.length
+    //   outgoing[id] is non-null iff incoming[id] is non-null
+    //   outgoing[s].get(t) == incoming[t].get(s) for all vertices s, t, and
+    //     every key of a table is a vertex
+    //   all weights are positive
+    // Safety from rep exposure:
+    //   all fields are private and the tables are never returned; walks pass
+    //   out only IDs and primitive weights
+
+    /**
+     * Make an empty adjacency.
+     *
+     * @param expectedBound expected exclusive upper bound on the IDs, nonnegative
+     */
+    IntAdjacency(int expectedBound) {
+        outgoing = new IntIntTable[Math.max(8, expectedBound)];
+        incoming = new IntIntTable[outgoing.length];
+    }
+
+    /**
+     * Check the whole rep invariant, in time proportional to the largest ID
+     * plus the number of edges.
+     *
+     * @return true iff the rep invariant holds
+     */
+    boolean repOk() {
+        if (outgoing.length != incoming.length) return false;
+        for (int id = 0; id < outgoing.length; id++) {
+            if ((outgoing[id] != null) != (incoming[id] != null)) return false;
+            if (outgoing[id] == null) continue;
+            IntIntTable out = outgoing[id];
+            for (int slot = 0; slot < out.capacity(); slot++) {
+                int target = out.keyAt(slot);
+                if (target < 0) continue;
+                if (out.valueAt(slot) <= 0 || !contains(target)) return false;
+                if (incoming[target].get(id) != out.valueAt(slot)) return false;
+            }
+            IntIntTable in = incoming[id];
+            for (int slot = 0; slot < in.capacity(); slot++) {
+                int source = in.keyAt(slot);
+                if (source >= 0 && (!contains(source) || outgoing[source].get(id) != in.valueAt(slot))) return false;
+            }
+        }
+        return true;
+    }
+
+    // Asserts the part of the rep invariant about one ID, in constant time.
+    void checkVertex(int id) {
+        assert outgoing.length == incoming.length;
+        assert id >= outgoing.length || (outgoing[id] != null) == (incoming[id] != null);
+    }
+
+    // Asserts that both directions of one edge agree, in constant time.
+    void checkEdge(int source, int target) {
+        int weight = outgoing[source].get(target);
+        assert weight >= 0;
+        assert weight == incoming[target].get(source);
+    }
+
+    /** @return an exclusive upper bound on the vertices */
+    int bound() {
+        return outgoing.length;
+    }
+
+    /**
+     * @param id any int
+     * @return true iff id is a vertex
+     */
+    boolean contains(int id) {
+        return id >= 0 && id < outgoing.length && outgoing[id] != null;
+    }
+
+    /**
+     * Add a vertex with no edges, if it is not already present.
+     *
+     * @param id the vertex, nonnegative
+     * @return true iff id was not already a vertex
+     */
+    boolean add(int id) {
+        if (id >= outgoing.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * outgoing.length, id + 1L));
+            outgoing = Arrays.copyOf(outgoing, capacity);
+            incoming = Arrays.copyOf(incoming, capacity);
+        }
+        if (outgoing[id] != null) return false;
+        outgoing[id] = new IntIntTable(INITIAL_DEGREE);
+        incoming[id] = new IntIntTable(INITIAL_DEGREE);
+        checkVertex(id);
+        return true;
+    }
+
+    /**
+     * Remove a vertex and all of its edges.
+     *
+     * @param id a vertex
+     */
+    void remove(int id) {
+        IntIntTable out = outgoing[id];
+        for (int slot = 0; slot < out.capacity(); slot++) {
+            int target = out.keyAt(slot);
+            if (target >= 0 && target != id) incoming[target].remove(id);
+        }
+        IntIntTable in = incoming[id];
+        for (int slot = 0; slot < in.capacity(); slot++) {
+            int source = in.keyAt(slot);
+            if (source >= 0 && source != id) outgoing[source].remove(id);
+        }
+        outgoing[id] = null;
+        incoming[id] = null;
+        checkVertex(id);
+    }
+
+    /**
+     * @param source a vertex
+     * @param target a vertex
+     * @param weight new weight of the edge, nonnegative; 0 removes it
+     * @return previous weight of the edge, or 0 if there was none
+     */
+    int set(int source, int target, int weight) {
+        int previous;
+        if (weight == 0) {
+            previous = outgoing[source].remove(target);
+            incoming[target].remove(source);
+        } else {
+            previous = outgoing[source].put(target, weight);
+            incoming[target].put(source, weight);
+        }
+        return previous;
+    }
+
+    /**
+     * @param source a vertex
+     * @param target a vertex
+     * @param delta amount to add to the weight of the edge, which must leave
+     *              it nonnegative
+     * @return previous weight of the edge, or 0 if there was none
+     */
+    int increment(int source, int target, int delta) {
+        int previous = outgoing[source].get(target);
+        set(source, target, previous + delta);
+        return previous;
+    }
+
+    /**
+     * @param id a vertex
+     * @return number of edges out of id
+     */
+    int outDegree(int id) {
+        return outgoing[id].size();
+    }
+
+    /**
+     * Call action with the ID and weight of every edge out of a vertex.
+     *
+     * @param id a vertex
+     * @param action called once per edge
+     */
+    void forEachTarget(int id, IdConsumer action) {
+        forEach(outgoing[id], action);
+    }
+
+    /**
+     * Call action with the ID and weight of every edge into a vertex.
+     *
+     * @param id a vertex
+     * @param action called once per edge
+     */
+    void forEachSource(int id, IdConsumer action) {
+        forEach(incoming[id], action);
+    }
+
+    private static void forEach(IntIntTable table, IdConsumer action) {
+        for (int slot = 0; slot < table.capacity(); slot++) {
+            int neighbor = table.keyAt(slot);
+            if (neighbor >= 0) action.accept(neighbor, table.valueAt(slot));
+        }
+    }
+
+    /**
+     * A function of one edge of a vertex, given the ID of the vertex at its
+     * other end and its weight.
+     */
+    interface IdConsumer {
+        void accept(int neighbor, int weight);
+    }
+
+    @Override
+    public String toString() {
+        return "IntAdjacency with bound " + outgoing.length;
+    }
+}
@@ -0,0 +1,182 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * A mutable map from non-negative int keys to non-zero int values, stored in
+ * two parallel primitive arrays with open addressing and linear probing, so
+ * that neither keys nor values are ever boxed.
+ *
+ * <p>Absent keys read as 0. Entries can be walked without allocation by
+ * looping over slots 0 to {@link #capacity()} and skipping those whose
+ * {@link #keyAt(int)} is negative.
+ */
+final class IntIntTable {
+
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] keys;
+    private int[] values;
+    private int size = 0;
+    private int shift;
+
+    // Abstraction function:
+    //   represents the map { keys[i] -> values[i] | keys[i] != EMPTY }
+    // Representation invariant:
+    //   keys.length == values.length == 2^(32 - shift), a power of two >= MIN_CAPACITY
+    //   size == number of non-EMPTY keys, and size <= 3/4 of keys.length
+    //   every non-EMPTY key is >= 0, distinct, has a non-zero value, and is
+    //     reachable by linear probing from its home slot without crossing an EMPTY slot
+    // Safety from rep exposure:
+    //   all fields are private and the arrays are never returned
+
+    /**
+     * Make an empty table.
+     *
+     * @param expectedSize number of entries the table should hold without resizing
+     */
+    IntIntTable(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity - (capacity >>> 2) < size) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    private int home(int key) {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        for (int slot = home(key); ; slot = (slot + 1) & mask) {
+            int k = keys[slot];
+            if (k == key) return slot;
+            if (k == EMPTY) return -1 - slot;
+        }
+    }
+
+    /** @return number of entries in the table */
+    int size() {
+        return size;
+    }
+
+    /** @return number of slots, an exclusive bound for {@link #keyAt(int)} */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @param slot index in [0, capacity())
+     * @return the key stored in slot, or a negative number if the slot is free
+     */
+    int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * @param slot index in [0, capacity()) of a non-free slot
+     * @return the value stored in slot
+     */
+    int valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * @param key a non-negative key
+     * @return the value for key, or 0 if the table has no entry for key
+     */
+    int get(int key) {
+        int slot = find(key);
+        return slot < 0 ? 0 : values[slot];
+    }
+
+    /**
+     * Put an entry in the table.
+     *
+     * @param key a non-negative key
+     * @param value a non-zero value
+     * @return the previous value for key, or 0 if there was none
+     */
+    int put(int key, int value) {
+        int slot = find(key);
+        if (slot >= 0) {
+            int previous = values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        if (size + 1 > keys.length - (keys.length >>> 2)) {
+            rehash(keys.length << 1);
+            slot = find(key);
+        }
+        slot = -1 - slot;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return 0;
+    }
+
+    /**
+     * Remove an entry from the table.
+     *
+     * @param key a non-negative key
+     * @return the value that key had, or 0 if there was none
+     */
+    int remove(int key) {
+        int slot = find(key);
+        if (slot < 0) return 0;
+        int previous = values[slot];
+        int mask = keys.length - 1;
+        // shift later members of the probe run back so that no lookup crosses a hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = home(keys[next]);
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = 0;
+        size--;
+        return previous;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = -1 - find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == EMPTY) continue;
+            if (result.length() > 1) result.append(", ");
+            result.append(keys[i]).append('=').append(values[i]);
+        }
+        return result.append('}').toString();
+    }
+}
@@ -0,0 +1,165 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * A mutable dictionary that interns vertex labels to small dense int IDs.
+ *
+ * <p>Labels are found by open addressing over an int table of IDs, so lookups
+ * allocate nothing. IDs of released labels are reused by later interns, which
+ * keeps the ID space no larger than the peak number of live labels.
+ */
+final class LabelIndex<L> {
+
+    private static final int EMPTY = -1;
+
+    private Object[] labels;
+    private int[] table;
+    private int[] free = new int[8];
+    private int freeCount = 0;
+    private int limit = 0;
+    private int size = 0;
+
+    // Abstraction function:
+    //   represents the bijection { labels[id] <-> id | 0 <= id < limit, labels[id] != null }
+    // Representation invariant:
+    //   table.length is a power of two and size <= table.length / 2
+    //   each live id appears exactly once in table, reachable by linear probing
+    //     from the home slot of labels[id].hashCode() without crossing an EMPTY slot
+    //   free[0..freeCount) are exactly the ids below limit whose label is null
+    //   size == limit - freeCount
+    // Safety from rep exposure:
+    //   all fields are private and the arrays are never returned
+
+    /** Make an empty index. */
+    LabelIndex() {
+        this(8);
+    }
+
+    /**
+     * Make an empty index.
+     *
+     * @param expectedSize number of labels the index should hold without resizing
+     */
+    LabelIndex(int expectedSize) {
+        int capacity = 16;
+        while (capacity / 2 < expectedSize && capacity < 1 << 30) {
+            capacity <<= 1;
+        }
+        labels = new Object[Math.max(8, expectedSize)];
+        table = emptyTable(capacity);
+    }
+
+    private static int[] emptyTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int home(Object label, int mask) {
+        int h = label.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int find(Object label) {
+        int mask = table.length - 1;
+        for (int slot = home(label, mask); ; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (id == EMPTY) return -1 - slot;
+            if (labels[id].equals(label)) return slot;
+        }
+    }
+
+    /** @return number of labels in the index */
+    int size() {
+        return size;
+    }
+
+    /** @return an exclusive upper bound on every ID in the index */
+    int limit() {
+        return limit;
+    }
+
+    /**
+     * @param label a label
+     * @return the ID of label, or -1 if it is not in the index
+     */
+    int id(Object label) {
+        int slot = find(label);
+        return slot < 0 ? -1 : table[slot];
+    }
+
+    /**
+     * @param id an int
+     * @return the label with that ID, or null if no label has it
+     */
+    @SuppressWarnings("unchecked")
+    L label(int id) {
+        return id >= 0 && id < limit ? (L) labels[id] : null;
+    }
+
+    /**
+     * Add a label to the index if it is not there already.
+     *
+     * @param label a label
+     * @return the ID of label
+     */
+    int intern(L label) {
+        int slot = find(label);
+        if (slot >= 0) return table[slot];
+        int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+        } else {
+            id = limit++;
+            if (id == labels.length) labels = Arrays.copyOf(labels, id * 2);
+        }
+        labels[id] = label;
+        size++;
+        if (size > table.length / 2) {
+            rehash(table.length * 2);
+        } else {
+            table[-1 - slot] = id;
+        }
+        return id;
+    }
+
+    /**
+     * Remove a label from the index, freeing its ID for reuse.
+     *
+     * @param label a label
+     * @return the ID label had, or -1 if it was not in the index
+     */
+    int release(Object label) {
+        int slot = find(label);
+        if (slot < 0) return -1;
+        int id = table[slot];
+        int mask = table.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+            int home = home(labels[table[next]], mask);
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = EMPTY;
+        labels[id] = null;
+        if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+        free[freeCount++] = id;
+        size--;
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        table = emptyTable(capacity);
+        int mask = capacity - 1;
+        for (int id = 0; id < limit; id++) {
+            if (labels[id] == null) continue;
+            int slot = home(labels[id], mask);
+            while (table[slot] != EMPTY) slot = (slot + 1) & mask;
+            table[slot] = id;
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable graph of strings read from a binary graph file mapped into
+ * memory, so that a large built graph can be loaded without parsing it and
+ * queried without copying it onto the heap.
+ *
+ * <p>The file holds the same compressed sparse row layout as
+ * {@link FrozenGraph}. All numbers are big-endian 32-bit ints:
+ * <pre>
+ *   header       MAGIC, VERSION, n (vertices), e (edges), c (label table slots), b (label bytes)
+ *   labelStart   n+1 offsets into the label bytes; label i is [labelStart[i], labelStart[i+1])
+ *   labelTable   c slots of vertex IDs or -1, an open-addressing hash table over the labels
+ *   outStart     n+1 offsets; the out-run of vertex i is [outStart[i], outStart[i+1])
+ *   outTargets   e target IDs, each out-run sorted ascending
+ *   outWeights   e weights, parallel to outTargets
+ *   outOrder     e indexes giving each out-run in the original targets() iteration order
+ *   inStart      n+1 offsets; the in-run of vertex i is [inStart[i], inStart[i+1])
+ *   inSources    e source IDs, each in-run sorted ascending
+ *   inWeights    e weights, parallel to inSources
+ *   labelBytes   b bytes of UTF-8 labels, unpadded
+ * </pre>
+ * A label is found by hashing it into labelTable and comparing its UTF-8
+ * encoding with the mapped bytes; labels are decoded to strings only when
+ * returned. Files are limited to 2 GB, the most a single mapping can hold.
+ * Opening a file checks only its header and size, in constant time, so that
+ * pages are read from disk only as queries touch them. Each query checks the
+ * bounds of the run it reads, so a corrupt file fails that query with
+ * {@link IllegalStateException}; {@link #validate()} checks a whole file up
+ * front.
+ *
+ * <p>The mapping is released when the graph is garbage collected. The file
+ * must not be modified while it is mapped. All mutators throw
+ * {@link UnsupportedOperationException}.
+ */
+public final class MappedGraph implements Graph<String> {
+
+    private static final int MAGIC = 0x47504752;
+    private static final int VERSION = 1;
+    private static final int HEADER = 6;
+    private static final int EMPTY = -1;
+
+    private final ByteBuffer bytes;
+    private final IntBuffer ints;
+    private final int n;
+    private final int edges;
+    private final int tableMask;
+    private final int labelStart;
+    private final int labelTable;
+    private final int outStart;
+    private final int outTargets;
+    private final int outWeights;
+    private final int outOrder;
+    private final int inStart;
+    private final int inSources;
+    private final int inWeights;
+    private final int labelBytes;
+
+    // Abstraction function:
+    //   represents the graph described by the mapped file in bytes, as laid
+    //   out above; the int fields other than n, edges and tableMask are the
+    //   int offsets in ints of the sections they name, except labelBytes,
+    //   which is a byte offset in bytes
+    // Representation invariant:
+    //   ints is the int view of bytes, starting at byte 0
+    //   the header is valid and every section lies within the buffer
+    //   the sections satisfy the rep invariant of FrozenGraph; only the
+    //     header is checked on open, since checking the sections reads the
+    //     whole file, so queries check the runs they read and validate()
+    //     checks the rest
+    // Safety from rep exposure:
+    //   all fields are private and final; the buffers are never returned, and
+    //   are only read with absolute gets, which leave their positions alone
+    // Thread safety argument:
+    //   the mapping is read-only and absolute gets do not mutate the buffers,
+    //   so any number of threads may query a graph concurrently
+
+    /**
+     * Write a graph to a binary graph file that {@link #open(Path)} can map.
+     * Creates or replaces the file.
+     *
+     * @param graph graph to write
+     * @param file path of the file to write
+     * @throws IOException if the file cannot be written, or the graph is too
+     *                     large for one mapping
+     */
+    public static void write(Graph<String> graph, Path file) throws IOException {
+        LabelIndex<String> labels = new LabelIndex<>();
+        for (String label : graph.vertices()) {
+            labels.intern(label);
+        }
+        int n = labels.size();
+        CompressedRows rows;
+        try {
+            rows = new CompressedRows(graph, labels);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("graph is too large for a single mapped file", e);
+        }
+        byte[][] encoded = new byte[n][];
+        long byteCount = 0;
+        for (int id = 0; id < n; id++) {
+            encoded[id] = labels.label(id).getBytes(StandardCharsets.UTF_8);
+            byteCount += encoded[id].length;
+        }
+        int capacity = tableCapacity(n);
+        if (fileSize(n, rows.edges(), capacity, byteCount) > Integer.MAX_VALUE) {
+            throw new IOException("graph is too large for a single mapped file");
+        }
+
+        int[] start = new int[n + 1];
+        for (int id = 0; id < n; id++) {
+            start[id + 1] = start[id] + encoded[id].length;
+        }
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        for (int id = 0; id < n; id++) {
+            int slot = home(labels.label(id), capacity - 1);
+            while (table[slot] != EMPTY) slot = (slot + 1) & (capacity - 1);
+            table[slot] = id;
+        }
+
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeInt(n);
+            stream.writeInt(rows.edges());
+            stream.writeInt(capacity);
+            stream.writeInt((int) byteCount);
+            int[][] sections = { start, table, rows.outStart, rows.outTargets, rows.outWeights, rows.outOrder,
+                    rows.inStart, rows.inSources, rows.inWeights };
+            for (int[] section : sections) {
+                for (int value : section) {
+                    stream.writeInt(value);
+                }
+            }
+            for (byte[] label : encoded) {
+                stream.write(label);
+            }
+        }
+    }
+
+    /**
+     * Map a binary graph file written by {@link #write(Graph, Path)}. Takes
+     * constant time, whatever the size of the file: only the header is read
+     * and checked against the size of the file.
+     *
+     * @param file path of the file to map
+     * @return a read-only graph backed by the mapped file
+     * @throws IOException if the file cannot be read, is not a graph file of
+     *                     a supported version, or its header is corrupt
+     */
+    public static MappedGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("graph file is too large to map: " + file);
+            if (size < 4 * HEADER) throw new IOException("not a graph file: " + file);
+            return new MappedGraph(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), file);
+        }
+    }
+
+    private MappedGraph(ByteBuffer bytes, Path file) throws IOException {
+        this.bytes = bytes;
+        this.ints = bytes.asIntBuffer();
+        if (ints.get(0) != MAGIC) throw new IOException("not a graph file: " + file);
+        if (ints.get(1) != VERSION) throw new IOException("unsupported graph file version " + ints.get(1) + ": " + file);
+        n = ints.get(2);
+        edges = ints.get(3);
+        int capacity = ints.get(4);
+        int byteCount = ints.get(5);
+        if (n < 0 || edges < 0 || byteCount < 0 || capacity != tableCapacity(n)
+                || fileSize(n, edges, capacity, byteCount) != bytes.capacity()) {
+            throw new IOException("corrupt graph file: " + file);
+        }
+        tableMask = capacity - 1;
+        labelStart = HEADER;
+        labelTable = labelStart + n + 1;
+        outStart = labelTable + capacity;
+        outTargets = outStart + n + 1;
+        outWeights = outTargets + edges;
+        outOrder = outWeights + edges;
+        inStart = outOrder + edges;
+        inSources = inStart + n + 1;
+        inWeights = inSources + edges;
+        labelBytes = 4 * (inWeights + edges);
+        checkRep();
+    }
+
+    /**
+     * Check every section of the mapped file, whether or not assertions are
+     * enabled. Takes time proportional to the size of the file, and reads
+     * every page of it.
+     *
+     * @throws IllegalStateException if the file is corrupt
+     */
+    public void validate() {
+        if (!sectionsOk()) throw new IllegalStateException("corrupt graph file");
+    }
+
+    // Checks that every offset and ID in the sections is in range, and that
+    // every run is sorted with positive weights.
+    private boolean sectionsOk() {
+        int capacity = tableMask + 1;
+        if (!offsetsOk(labelStart, bytes.capacity() - labelBytes) || !offsetsOk(outStart, edges) || !offsetsOk(inStart, edges)) return false;
+        int used = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int id = ints.get(labelTable + slot);
+            if (id == EMPTY) continue;
+            if (id < 0 || id >= n) return false;
+            used++;
+        }
+        // capacity > n, so a table of n IDs leaves an EMPTY slot to end every probe
+        if (used != n) return false;
+        for (int id = 0; id < n; id++) {
+            int from = ints.get(outStart + id);
+            int to = ints.get(outStart + id + 1);
+            if (!runOk(outTargets, outWeights, from, to)) return false;
+            for (int i = from; i < to; i++) {
+                int slot = ints.get(outOrder + i);
+                if (slot < from || slot >= to) return false;
+            }
+            if (!runOk(inSources, inWeights, ints.get(inStart + id), ints.get(inStart + id + 1))) return false;
+        }
+        return true;
+    }
+
+    // Checks that the n+1 offsets of a section start at 0, never decrease, and end at last.
+    private boolean offsetsOk(int section, int last) {
+        if (ints.get(section) != 0 || ints.get(section + n) != last) return false;
+        for (int id = 0; id < n; id++) {
+            if (ints.get(section + id) > ints.get(section + id + 1)) return false;
+        }
+        return true;
+    }
+
+    // Checks that a run holds strictly increasing vertex IDs with positive weights.
+    private boolean runOk(int neighbors, int weights, int from, int to) {
+        int previous = -1;
+        for (int i = from; i < to; i++) {
+            int id = ints.get(neighbors + i);
+            if (id <= previous || id >= n || ints.get(weights + i) <= 0) return false;
+            previous = id;
+        }
+        return true;
+    }
+
+    // Returns the start of the run of id in the offsets section at offsets,
+    // after checking that the run lies within the edges.
+    private int runStart(int offsets, int id) {
+        int from = ints.get(offsets + id);
+        if (from < 0 || from > ints.get(offsets + id + 1) || ints.get(offsets + id + 1) > edges) {
+            throw new IllegalStateException("corrupt graph file: bad run of vertex " + id);
+        }
+        return from;
+    }
+
+    private void checkRep() {
+        assert outWeights - outTargets == edges;
+        assert inWeights - inSources == edges;
+        assert labelBytes <= bytes.capacity();
+    }
+
+    // Smallest power of two at least twice the number of labels, and at least 2.
+    private static int tableCapacity(int n) {
+        return Integer.highestOneBit(Math.max(1, n) * 2 - 1) << 1;
+    }
+
+    private static long fileSize(int n, long edges, int capacity, long byteCount) {
+        return 4L * (HEADER + 3L * (n + 1) + capacity + 5L * edges) + byteCount;
+    }
+
+    private static int home(String label, int mask) {
+        int h = label.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // Returns the ID of label, or -1 if it is not a vertex.
+    private int id(Object label) {
+        if (!(label instanceof String)) return -1;
+        byte[] encoded = ((String) label).getBytes(StandardCharsets.UTF_8);
+        for (int slot = home((String) label, tableMask); ; slot = (slot + 1) & tableMask) {
+            int id = ints.get(labelTable + slot);
+            if (id == EMPTY) return -1;
+            if (id < 0 || id >= n) throw new IllegalStateException("corrupt graph file: bad label table slot " + slot);
+            if (labelEquals(id, encoded)) return id;
+        }
+    }
+
+    private boolean labelEquals(int id, byte[] encoded) {
+        int from = ints.get(labelStart + id);
+        if (ints.get(labelStart + id + 1) - from != encoded.length) return false;
+        for (int i = 0; i < encoded.length; i++) {
+            if (bytes.get(labelBytes + from + i) != encoded[i]) return false;
+        }
+        return true;
+    }
+
+    private String label(int id) {
+        if (id < 0 || id >= n) throw new IllegalStateException("corrupt graph file: bad vertex ID " + id);
+        int from = ints.get(labelStart + id);
+        int to = ints.get(labelStart + id + 1);
+        if (from < 0 || from > to || labelBytes + (long) to > bytes.capacity()) {
+            throw new IllegalStateException("corrupt graph file: bad label of vertex " + id);
+        }
+        byte[] encoded = new byte[to - from];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = bytes.get(labelBytes + from + i);
+        }
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    /** @return this graph, which is already immutable */
+    @Override
+    public MappedGraph freeze() {
+        return this;
+    }
+
+    @Override
+    public boolean add(String vertex) {
+        throw new UnsupportedOperationException("mapped graph cannot be mutated");
+    }
+
+    @Override
+    public int set(String source, String target, int weight) {
+        throw new UnsupportedOperationException("mapped graph cannot be mutated");
+    }
+
+    @Override
+    public boolean remove(String vertex) {
+        throw new UnsupportedOperationException("mapped graph cannot be mutated");
+    }
+
+    /** @return an unmodifiable view of the vertices, decoding each label as it is iterated */
+    @Override
+    public Set<String> vertices() {
+        return new AbstractSet<String>() {
+            @Override
+            public int size() {
+                return n;
+            }
+
+            @Override
+            public boolean contains(Object label) {
+                return id(label) >= 0;
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < n;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next >= n) throw new NoSuchElementException();
+                        return label(next++);
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Map<String, Integer> sources(String target) {
+        int id = id(target);
+        if (id < 0) return Collections.emptyMap();
+        return new Neighbors(inSources, inWeights, -1, runStart(inStart, id), ints.get(inStart + id + 1));
+    }
+
+    @Override
+    public Map<String, Integer> targets(String source) {
+        int id = id(source);
+        if (id < 0) return Collections.emptyMap();
+        return new Neighbors(outTargets, outWeights, outOrder, runStart(outStart, id), ints.get(outStart + id + 1));
+    }
+
+    @Override
+    public void forEachSource(String target, NeighborConsumer<? super String> action) {
+        int id = id(target);
+        if (id < 0) return;
+        for (int i = runStart(inStart, id); i < ints.get(inStart + id + 1); i++) {
+            action.accept(label(ints.get(inSources + i)), ints.get(inWeights + i));
+        }
+    }
+
+    @Override
+    public void forEachTarget(String source, NeighborConsumer<? super String> action) {
+        int id = id(source);
+        if (id < 0) return;
+        for (int i = runStart(outStart, id); i < ints.get(outStart + id + 1); i++) {
+            int slot = ints.get(outOrder + i);
+            action.accept(label(ints.get(outTargets + slot)), ints.get(outWeights + slot));
+        }
+    }
+
+    /**
+     * @param source a label
+     * @param target a label
+     * @return the weight of the edge from source to target, or 0 if there is none
+     */
+    public int weight(String source, String target) {
+        int s = id(source);
+        int t = id(target);
+        if (s < 0 || t < 0) return 0;
+        int i = search(outTargets, runStart(outStart, s), ints.get(outStart + s + 1), t);
+        return i < 0 ? 0 : ints.get(outWeights + i);
+    }
+
+    // Returns the index in [from, to) of id in the sorted run of the section
+    // at offset, or -1 if it is not there.
+    private int search(int section, int from, int to, int id) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = ints.get(section + mid);
+            if (value < id) {
+                low = mid + 1;
+            } else if (value > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder edges = new StringBuilder();
+        for (int id = 0; id < n; id++) {
+            if (ints.get(outStart + id) == ints.get(outStart + id + 1)) continue;
+            if (edges.length() > 0) edges.append(", ");
+            String label = label(id);
+            edges.append(label).append('=').append(targets(label));
+        }
+        return "Vertices: " + vertices() + ", Edges: {" + edges + "}";
+    }
+
+    /**
+     * An unmodifiable map view of one run of neighbor IDs and weights.
+     */
+    private final class Neighbors extends AbstractMap<String, Integer> {
+        private final int neighbors;
+        private final int weights;
+        private final int order;
+        private final int from;
+        private final int to;
+
+        // Views the sections at neighbors and weights over [from, to), iterated
+        // in the order given by the section at order if order is not -1.
+        private Neighbors(int neighbors, int weights, int order, int from, int to) {
+            this.neighbors = neighbors;
+            this.weights = weights;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        private int find(Object key) {
+            int id = id(key);
+            return id < 0 ? -1 : search(neighbors, from, to, id);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) >= 0;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            int i = find(key);
+            return i < 0 ? null : ints.get(weights + i);
+        }
+
+        @Override
+        public Set<Map.Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Integer>>() {
+                @Override
+                public int size() {
+                    return to - from;
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, Integer>> iterator() {
+                    return new Iterator<Map.Entry<String, Integer>>() {
+                        private int next = from;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < to;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Integer> next() {
+                            if (next >= to) throw new NoSuchElementException();
+                            int i = order < 0 ? next : ints.get(order + next);
+                            next++;
+                            return new AbstractMap.SimpleImmutableEntry<>(label(ints.get(neighbors + i)), ints.get(weights + i));
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
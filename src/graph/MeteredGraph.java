@@ -0,0 +1,166 @@
+package graph;
+
+import java.util.Map;
+import java.util.Set;
+
+import metrics.Histogram;
+import metrics.Metrics;
+
+/**
+ * A graph that forwards to another graph and records the latency of every
+ * call in a metrics registry, in histograms named after the operation, such
+ * as {@code graph.set} or {@code graph.targets} for the prefix "graph".
+ *
+ * <p>The latency of a call includes any rep-invariant checking the
+ * underlying graph does, and for forEachSource() and forEachTarget() the
+ * time spent in the action. A metered graph is safe for concurrent use exactly
+ * when the underlying graph is.
+ */
+public class MeteredGraph<L> implements Graph<L> {
+
+    private final Graph<L> graph;
+    private final Histogram add;
+    private final Histogram set;
+    private final Histogram increment;
+    private final Histogram remove;
+    private final Histogram vertices;
+    private final Histogram sources;
+    private final Histogram targets;
+    private final Histogram forEachSource;
+    private final Histogram forEachTarget;
+
+    // Abstraction function:
+    //   represents graph
+    // Representation invariant:
+    //   graph is not itself being mutated except through this
+    // Safety from rep exposure:
+    //   all fields are private and final; queries return whatever graph returns
+
+    /**
+     * @param graph graph to forward to
+     * @param metrics registry to record latencies in
+     * @param prefix prefix of the names of the histograms
+     */
+    public MeteredGraph(Graph<L> graph, Metrics metrics, String prefix) {
+        this.graph = graph;
+        this.add = metrics.histogram(prefix + ".add");
+        this.set = metrics.histogram(prefix + ".set");
+        this.increment = metrics.histogram(prefix + ".increment");
+        this.remove = metrics.histogram(prefix + ".remove");
+        this.vertices = metrics.histogram(prefix + ".vertices");
+        this.sources = metrics.histogram(prefix + ".sources");
+        this.targets = metrics.histogram(prefix + ".targets");
+        this.forEachSource = metrics.histogram(prefix + ".forEachSource");
+        this.forEachTarget = metrics.histogram(prefix + ".forEachTarget");
+    }
+
+    private MeteredGraph(Graph<L> graph, MeteredGraph<L> histograms) {
+        this.graph = graph;
+        this.add = histograms.add;
+        this.set = histograms.set;
+        this.increment = histograms.increment;
+        this.remove = histograms.remove;
+        this.vertices = histograms.vertices;
+        this.sources = histograms.sources;
+        this.targets = histograms.targets;
+        this.forEachSource = histograms.forEachSource;
+        this.forEachTarget = histograms.forEachTarget;
+    }
+
+    /** @return the graph this forwards to */
+    public Graph<L> delegate() {
+        return graph;
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        long start = System.nanoTime();
+        boolean added = graph.add(vertex);
+        add.recordSince(start);
+        return added;
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        long start = System.nanoTime();
+        int previous = graph.set(source, target, weight);
+        set.recordSince(start);
+        return previous;
+    }
+
+    @Override
+    public int increment(L source, L target, int delta) {
+        long start = System.nanoTime();
+        int previous = graph.increment(source, target, delta);
+        increment.recordSince(start);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        long start = System.nanoTime();
+        boolean removed = graph.remove(vertex);
+        remove.recordSince(start);
+        return removed;
+    }
+
+    @Override
+    public Set<L> vertices() {
+        long start = System.nanoTime();
+        Set<L> result = graph.vertices();
+        vertices.recordSince(start);
+        return result;
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        long start = System.nanoTime();
+        Map<L, Integer> result = graph.sources(target);
+        sources.recordSince(start);
+        return result;
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        long start = System.nanoTime();
+        Map<L, Integer> result = graph.targets(source);
+        targets.recordSince(start);
+        return result;
+    }
+
+    @Override
+    public void forEachSource(L target, NeighborConsumer<? super L> action) {
+        long start = System.nanoTime();
+        graph.forEachSource(target, action);
+        forEachSource.recordSince(start);
+    }
+
+    @Override
+    public void forEachTarget(L source, NeighborConsumer<? super L> action) {
+        long start = System.nanoTime();
+        graph.forEachTarget(source, action);
+        forEachTarget.recordSince(start);
+    }
+
+    @Override
+    public Map<L, Integer> topTargets(L source, int k) {
+        return graph.topTargets(source, k);
+    }
+
+    @Override
+    public Map<L, Integer> topSources(L target, int k) {
+        return graph.topSources(target, k);
+    }
+
+    /** @return a metered graph recording into the same histograms, over a frozen copy of the graph */
+    @Override
+    public MeteredGraph<L> freeze() {
+        Graph<L> frozen = graph.freeze();
+        return frozen == graph ? this : new MeteredGraph<>(frozen, this);
+    }
+
+    @Override
+    public String toString() {
+        return graph.toString();
+    }
+}
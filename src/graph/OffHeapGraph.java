@@ -0,0 +1,529 @@
+package graph;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mutable weighted directed graph that keeps its vertex table and all of its
+ * adjacency in direct byte buffers, outside the Java heap, for graphs with
+ * hundreds of millions of edges.
+ *
+ * <p>Only the label dictionary lives on the heap, so the heap holds a few
+ * dozen bytes per vertex and nothing per edge, and garbage collection neither
+ * scans nor copies the adjacency however large it grows. Each vertex has a
+ * 32-byte record in a paged vertex table, pointing at two open-addressing
+ * hash tables of {@code (int neighbor, int weight)} slots, one for outgoing
+ * and one for incoming edges, so that updating or finding an edge takes
+ * expected constant time as in {@link CompactGraph}.
+ *
+ * <p>Tables are carved out of 64 MB segments by bumping a pointer. A table
+ * that fills up is copied to one twice its size, and the tables of a removed
+ * vertex are abandoned; either way the old bytes become garbage. When garbage
+ * makes up more than half of the allocated bytes, every live table is
+ * compacted into fresh segments and the old ones are dropped, which releases
+ * their memory once their buffer objects are collected. Memory therefore stays
+ * within about twice the live adjacency, which costs 8 bytes per slot at a
+ * load between 3/8 and 3/4, or 21 to 43 bytes per edge for both directions.
+ *
+ * <p>Not safe for concurrent use. {@link #freeze()} copies the graph onto the
+ * heap, so frozen snapshots of very large graphs should be written with
+ * {@link MappedGraph#write(Graph, java.nio.file.Path)} and mapped instead.
+ */
+public class OffHeapGraph<L> implements Graph<L> {
+
+    private static final int SEGMENT_BYTES = 1 << 26;
+    private static final int PAGE_VERTICES = 1 << 16;
+    private static final int RECORD_BYTES = 32;
+    private static final int SLOT_BYTES = 8;
+    private static final int MIN_CAPACITY = 4;
+    private static final int EMPTY = -1;
+
+    // offsets of the two sides of a vertex record, each holding the address
+    // (8 bytes), capacity (4) and size (4) of one table
+    private static final int OUT = 0;
+    private static final int IN = 16;
+
+    private final LabelIndex<L> labels = new LabelIndex<>();
+    private ByteBuffer[] pages = new ByteBuffer[1];
+    private List<ByteBuffer> segments = new ArrayList<>();
+    private int current = -1;
+    private int top = 0;
+    private long allocated = 0;
+    private long garbage = 0;
+    private Set<L> vertices = null;
+
+    // Abstraction function:
+    //   represents the graph whose vertices are the labels in labels, and which
+    //   has an edge labels.label(s) -> labels.label(t) of weight w iff the OUT
+    //   table of record s has a slot with key t and value w
+    // Representation invariant:
+    //   the record of every id below labels.limit() is in pages; the record
+    //     of an id with no label has capacity 0 on both sides
+    //   a table of capacity c > 0 is c slots at its address, with c a power
+    //     of two >= MIN_CAPACITY; size is its number of non-EMPTY keys, at
+    //     most 3/4 of c; its keys are distinct live ids, each reachable by
+    //     linear probing from its home slot without crossing an EMPTY slot,
+    //     with positive values
+    //   the OUT table of s maps t to w iff the IN table of t maps s to w
+    //   no two tables overlap, and each lies within one segment
+    //   allocated is the number of table bytes in segments, of which
+    //     garbage belong to no table, and garbage <= allocated
+    //   current is the segment being filled, or -1, and its bytes from top on are free
+    //   vertices is null or an unmodifiable set of exactly the live labels
+    // Safety from rep exposure:
+    //   all fields are private and the buffers are never returned;
+    //   sources() and targets() return fresh maps, vertices() returns an
+    //   unmodifiable snapshot that is never mutated, and forEachSource() and
+    //   forEachTarget() pass out only labels and primitive weights
+
+    // Checks the whole rep invariant, in time proportional to the size of the graph.
+    private boolean repOk() {
+        if (garbage < 0 || garbage > allocated) return false;
+        long live = 0;
+        for (int id = 0; id < labels.limit(); id++) {
+            boolean exists = labels.label(id) != null;
+            for (int side : new int[] { OUT, IN }) {
+                int capacity = capacity(id, side);
+                if (!exists && capacity != 0) return false;
+                if (capacity == 0) continue;
+                if (capacity < MIN_CAPACITY || Integer.bitCount(capacity) != 1) return false;
+                live += (long) capacity * SLOT_BYTES;
+                long address = address(id, side);
+                ByteBuffer segment = segment(address);
+                int count = 0;
+                for (int slot = 0; slot < capacity; slot++) {
+                    int neighbor = segment.getInt(at(address, slot));
+                    if (neighbor == EMPTY) continue;
+                    count++;
+                    int weight = segment.getInt(at(address, slot) + 4);
+                    if (weight <= 0 || labels.label(neighbor) == null) return false;
+                    if (get(neighbor, side == OUT ? IN : OUT, id) != weight) return false;
+                    if (find(id, side, neighbor) != slot) return false;
+                }
+                if (count != size(id, side) || count > capacity - (capacity >>> 2)) return false;
+            }
+        }
+        return live == allocated - garbage;
+    }
+
+    private void checkRep() {
+        assert repOk() : "rep invariant violated";
+    }
+
+    // Checks that the OUT and IN tables agree on one edge, in constant time.
+    private void checkEdge(int source, int target) {
+        if (RepChecks.FULL) {
+            checkRep();
+            return;
+        }
+        int weight = get(source, OUT, target);
+        assert weight >= 0;
+        assert weight == get(target, IN, source);
+    }
+
+    /**
+     * Check the whole rep invariant of this graph, whether or not assertions
+     * are enabled. Takes time proportional to the size of the graph.
+     *
+     * @throws IllegalStateException if the rep invariant does not hold
+     */
+    public void validate() {
+        if (!repOk()) throw new IllegalStateException("rep invariant violated");
+    }
+
+    /**
+     * @return number of bytes this graph holds outside the heap, including
+     *         garbage not yet compacted away
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer segment : segments) {
+            bytes += segment.capacity();
+        }
+        for (ByteBuffer page : pages) {
+            if (page != null) bytes += page.capacity();
+        }
+        return bytes;
+    }
+
+    private ByteBuffer page(int id) {
+        return pages[id / PAGE_VERTICES];
+    }
+
+    private static int record(int id, int side) {
+        return (id % PAGE_VERTICES) * RECORD_BYTES + side;
+    }
+
+    private long address(int id, int side) {
+        return page(id).getLong(record(id, side));
+    }
+
+    private int capacity(int id, int side) {
+        return page(id).getInt(record(id, side) + 8);
+    }
+
+    private int size(int id, int side) {
+        return page(id).getInt(record(id, side) + 12);
+    }
+
+    private void setTable(int id, int side, long address, int capacity, int size) {
+        ByteBuffer page = page(id);
+        int record = record(id, side);
+        page.putLong(record, address);
+        page.putInt(record + 8, capacity);
+        page.putInt(record + 12, size);
+    }
+
+    private void setSize(int id, int side, int size) {
+        page(id).putInt(record(id, side) + 12, size);
+    }
+
+    private int intern(L vertex) {
+        int id = labels.id(vertex);
+        if (id >= 0) return id;
+        id = labels.intern(vertex);
+        int page = id / PAGE_VERTICES;
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(pages.length * 2, page + 1));
+        }
+        if (pages[page] == null) {
+            pages[page] = ByteBuffer.allocateDirect(PAGE_VERTICES * RECORD_BYTES).order(ByteOrder.nativeOrder());
+        }
+        // a fresh page is zeroed, and remove() zeroes the record of a released id
+        vertices = null;
+        return id;
+    }
+
+    private ByteBuffer segment(long address) {
+        return segments.get((int) (address >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    // Offset in its segment of a slot of the table at address. Cannot
+    // overflow, since allocate() keeps every table within one int-indexed buffer.
+    private static int at(long address, int slot) {
+        return offset(address) + slot * SLOT_BYTES;
+    }
+
+    /**
+     * @param capacity number of slots in a table, positive
+     * @return number of bytes the table takes
+     * @throws IllegalStateException if the table would not fit in one buffer,
+     *         which limits a vertex to about 100 million neighbors on each side
+     */
+    static int tableBytes(int capacity) {
+        long bytes = (long) capacity * SLOT_BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("adjacency table of " + capacity + " slots exceeds " + Integer.MAX_VALUE + " bytes");
+        }
+        return (int) bytes;
+    }
+
+    // Allocate an empty table of capacity slots and return its address.
+    private long allocate(int capacity) {
+        int bytes = tableBytes(capacity);
+        long address;
+        if (bytes > SEGMENT_BYTES) {
+            // too large to share a segment
+            segments.add(ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder()));
+            address = (long) (segments.size() - 1) << 32;
+        } else {
+            if (current < 0 || top + bytes > SEGMENT_BYTES) {
+                segments.add(ByteBuffer.allocateDirect(SEGMENT_BYTES).order(ByteOrder.nativeOrder()));
+                current = segments.size() - 1;
+                top = 0;
+            }
+            address = (long) current << 32 | top;
+            top += bytes;
+        }
+        allocated += bytes;
+        ByteBuffer segment = segment(address);
+        for (int slot = 0; slot < capacity; slot++) {
+            segment.putLong(at(address, slot), -1L);
+        }
+        return address;
+    }
+
+    // Abandon the table on one side of a vertex.
+    private void free(int id, int side) {
+        garbage += (long) capacity(id, side) * SLOT_BYTES;
+        setTable(id, side, 0, 0, 0);
+    }
+
+    private void compactIfWasteful() {
+        if (garbage > SEGMENT_BYTES && garbage > allocated / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Copy every live table into fresh segments, dropping all garbage. Runs
+     * automatically when more than half of the allocated bytes are garbage;
+     * takes time proportional to the live adjacency.
+     */
+    public void compact() {
+        List<ByteBuffer> old = segments;
+        segments = new ArrayList<>();
+        current = -1;
+        top = 0;
+        allocated = 0;
+        garbage = 0;
+        for (int id = 0; id < labels.limit(); id++) {
+            if (labels.label(id) == null) continue;
+            for (int side : new int[] { OUT, IN }) {
+                int capacity = capacity(id, side);
+                if (capacity == 0) continue;
+                long from = address(id, side);
+                long to = allocate(capacity);
+                ByteBuffer source = old.get((int) (from >>> 32)).duplicate();
+                source.limit(offset(from) + tableBytes(capacity)).position(offset(from));
+                ByteBuffer target = segment(to).duplicate();
+                target.position(offset(to));
+                target.put(source);
+                setTable(id, side, to, capacity, size(id, side));
+            }
+        }
+        checkRep();
+    }
+
+    private static int home(int key, int capacity) {
+        return (key * 0x9E3779B9) >>> (Integer.numberOfLeadingZeros(capacity) + 1);
+    }
+
+    // Slot of key in a table, or -1 - the free slot where it would go.
+    private int find(int id, int side, int key) {
+        int capacity = capacity(id, side);
+        long address = address(id, side);
+        ByteBuffer segment = segment(address);
+        int mask = capacity - 1;
+        for (int slot = home(key, capacity); ; slot = (slot + 1) & mask) {
+            int k = segment.getInt(at(address, slot));
+            if (k == key) return slot;
+            if (k == EMPTY) return -1 - slot;
+        }
+    }
+
+    private int get(int id, int side, int key) {
+        if (capacity(id, side) == 0) return 0;
+        int slot = find(id, side, key);
+        if (slot < 0) return 0;
+        long address = address(id, side);
+        return segment(address).getInt(at(address, slot) + 4);
+    }
+
+    private int put(int id, int side, int key, int value) {
+        int capacity = capacity(id, side);
+        int size = size(id, side);
+        if (capacity > 0) {
+            int slot = find(id, side, key);
+            if (slot >= 0) {
+                long address = address(id, side);
+                ByteBuffer segment = segment(address);
+                int previous = segment.getInt(at(address, slot) + 4);
+                segment.putInt(at(address, slot) + 4, value);
+                return previous;
+            }
+        }
+        if (size + 1 > capacity - (capacity >>> 2)) {
+            grow(id, side, capacity == 0 ? MIN_CAPACITY : capacity * 2);
+        }
+        int slot = -1 - find(id, side, key);
+        long address = address(id, side);
+        ByteBuffer segment = segment(address);
+        segment.putInt(at(address, slot), key);
+        segment.putInt(at(address, slot) + 4, value);
+        setSize(id, side, size + 1);
+        return 0;
+    }
+
+    private void grow(int id, int side, int capacity) {
+        int oldCapacity = capacity(id, side);
+        long from = address(id, side);
+        int size = size(id, side);
+        long to = allocate(capacity);
+        if (oldCapacity > 0) {
+            free(id, side);
+        }
+        setTable(id, side, to, capacity, size);
+        if (oldCapacity == 0) return;
+        ByteBuffer source = segment(from);
+        ByteBuffer target = segment(to);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long entry = source.getLong(at(from, slot));
+            int key = source.getInt(at(from, slot));
+            if (key == EMPTY) continue;
+            int free = -1 - find(id, side, key);
+            target.putLong(at(to, free), entry);
+        }
+    }
+
+    private int remove(int id, int side, int key) {
+        if (capacity(id, side) == 0) return 0;
+        int slot = find(id, side, key);
+        if (slot < 0) return 0;
+        int capacity = capacity(id, side);
+        long address = address(id, side);
+        ByteBuffer segment = segment(address);
+        int previous = segment.getInt(at(address, slot) + 4);
+        int mask = capacity - 1;
+        // shift later members of the probe run back so that no lookup crosses a hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            int k = segment.getInt(at(address, next));
+            if (k == EMPTY) break;
+            int home = home(k, capacity);
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                segment.putLong(at(address, hole), segment.getLong(at(address, next)));
+                hole = next;
+            }
+        }
+        segment.putLong(at(address, hole), -1L);
+        setSize(id, side, size(id, side) - 1);
+        return previous;
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        if (labels.id(vertex) >= 0) {
+            return false;
+        }
+        intern(vertex);
+        return true;
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        int s = intern(source);
+        int t = intern(target);
+        int previous;
+        if (weight == 0) {
+            previous = remove(s, OUT, t);
+            remove(t, IN, s);
+        } else {
+            previous = put(s, OUT, t, weight);
+            put(t, IN, s, weight);
+        }
+        checkEdge(s, t);
+        compactIfWasteful();
+        return previous;
+    }
+
+    @Override
+    public int increment(L source, L target, int delta) {
+        int s = intern(source);
+        int t = intern(target);
+        int previous = get(s, OUT, t);
+        int weight = previous + delta;
+        if (weight == 0) {
+            remove(s, OUT, t);
+            remove(t, IN, s);
+        } else {
+            put(s, OUT, t, weight);
+            put(t, IN, s, weight);
+        }
+        checkEdge(s, t);
+        compactIfWasteful();
+        return previous;
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        int id = labels.id(vertex);
+        if (id < 0) {
+            return false;
+        }
+        forEach(id, OUT, (target, weight) -> {
+            if (target != id) remove(target, IN, id);
+        });
+        forEach(id, IN, (source, weight) -> {
+            if (source != id) remove(source, OUT, id);
+        });
+        if (capacity(id, OUT) > 0) free(id, OUT);
+        if (capacity(id, IN) > 0) free(id, IN);
+        labels.release(vertex);
+        vertices = null;
+        if (RepChecks.FULL) checkRep();
+        compactIfWasteful();
+        return true;
+    }
+
+    // Calls action with the id and weight of each neighbor on one side of a vertex.
+    private void forEach(int id, int side, IdConsumer action) {
+        int capacity = capacity(id, side);
+        if (capacity == 0) return;
+        long address = address(id, side);
+        ByteBuffer segment = segment(address);
+        for (int slot = 0; slot < capacity; slot++) {
+            int neighbor = segment.getInt(at(address, slot));
+            if (neighbor != EMPTY) action.accept(neighbor, segment.getInt(at(address, slot) + 4));
+        }
+    }
+
+    private interface IdConsumer {
+        void accept(int neighbor, int weight);
+    }
+
+    @Override
+    public Set<L> vertices() {
+        if (vertices == null) {
+            Set<L> snapshot = new HashSet<>();
+            for (int id = 0; id < labels.limit(); id++) {
+                L label = labels.label(id);
+                if (label != null) snapshot.add(label);
+            }
+            vertices = Collections.unmodifiableSet(snapshot);
+        }
+        return vertices;
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        return toMap(labels.id(target), IN);
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        return toMap(labels.id(source), OUT);
+    }
+
+    @Override
+    public void forEachSource(L target, NeighborConsumer<? super L> action) {
+        int id = labels.id(target);
+        if (id >= 0) forEach(id, IN, (source, weight) -> action.accept(labels.label(source), weight));
+    }
+
+    @Override
+    public void forEachTarget(L source, NeighborConsumer<? super L> action) {
+        int id = labels.id(source);
+        if (id >= 0) forEach(id, OUT, (target, weight) -> action.accept(labels.label(target), weight));
+    }
+
+    private Map<L, Integer> toMap(int id, int side) {
+        Map<L, Integer> map = new HashMap<>();
+        if (id >= 0) forEach(id, side, (neighbor, weight) -> map.put(labels.label(neighbor), weight));
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder edges = new StringBuilder();
+        for (int id = 0; id < labels.limit(); id++) {
+            if (labels.label(id) == null || size(id, OUT) == 0) continue;
+            if (edges.length() > 0) edges.append(", ");
+            edges.append(labels.label(id)).append('=').append(toMap(id, OUT));
+        }
+        return "Vertices: " + vertices() + ", Edges: {" + edges + "}";
+    }
+}
@@ -0,0 +1,23 @@
+package graph;
+
+/**
+ * How much of its rep invariant a graph checks after each mutation, when
+ * assertions are enabled.
+ *
+ * <p>By default a mutator checks only the part of the invariant it could have
+ * broken, such as the one edge that set() touched, so checking costs no more
+ * than the mutation itself and ingestion stays linear with {@code -ea} on.
+ * Running with the system property {@code graph.checkRep=full} makes every
+ * mutator check the whole invariant instead, which is thorough but makes
+ * building a graph quadratic. Either way, a full check can be run on demand
+ * with the graph's {@code validate()} method.
+ */
+final class RepChecks {
+
+    /** True iff mutators should check the whole rep invariant. */
+    static final boolean FULL = "full".equals(System.getProperty("graph.checkRep"));
+
+    private RepChecks() {
+        throw new AssertionError("not instantiable");
+    }
+}
@@ -0,0 +1,36 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utilities for ranking the weighted neighbors of a vertex.
+ */
+final class Weights {
+
+    private Weights() {
+        throw new AssertionError("not instantiable");
+    }
+
+    /**
+     * @param neighbors map from neighbors to positive weights
+     * @param k maximum number of neighbors to keep, nonnegative
+     * @return a fresh map of the min(k, neighbors.size()) heaviest neighbors,
+     *         iterated from greatest weight to least, with ties in the
+     *         iteration order of neighbors
+     */
+    static <L> Map<L, Integer> top(Map<L, Integer> neighbors, int k) {
+        if (k < 0) throw new IllegalArgumentException("k must be nonnegative: " + k);
+        List<Map.Entry<L, Integer>> edges = new ArrayList<>(neighbors.entrySet());
+        // the sort is stable, so ties stay in the iteration order of neighbors
+        Collections.sort(edges, (a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        Map<L, Integer> top = new LinkedHashMap<>();
+        for (Map.Entry<L, Integer> edge : edges.subList(0, Math.min(k, edges.size()))) {
+            top.put(edge.getKey(), edge.getValue());
+        }
+        return top;
+    }
+}
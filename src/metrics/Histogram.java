@@ -0,0 +1,151 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of non-negative long values, such as latencies in
+ * nanoseconds, with bounded relative error and constant-time recording.
+ *
+ * <p>Values are counted in log-linear buckets in the manner of HdrHistogram:
+ * each power of two is divided into 32 equal sub-buckets, so any quantile is
+ * reported within about 3% of the true value, and values below 32 exactly.
+ * Recording increments one bucket and a few adders and takes no lock. The
+ * histogram always occupies about 15 KB.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    // Abstraction function:
+    //   represents the multiset of recorded values, of which buckets[i] fall
+    //   in [lowerBound(i), lowerBound(i+1)), with total sum and maximum max
+    // Representation invariant:
+    //   every bucket count is non-negative
+    // Safety from rep exposure:
+    //   all fields are private and final; only primitives are returned
+    // Thread safety argument:
+    //   every field is a thread-safe atomic; a reader may see a recording
+    //   that is only partly applied, which skews a snapshot by at most the
+    //   recordings in flight
+
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    /** @return the name of this histogram in its registry */
+    public String name() {
+        return name;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int group = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << group;
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value value to record; negative values are recorded as 0
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        buckets.incrementAndGet(index(v));
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * Record the time elapsed since a start time.
+     *
+     * @param startNanos a value of {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /** @return number of values recorded */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /** @return sum of the values recorded */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /** @return largest value recorded, or 0 if there were none */
+    public long max() {
+        return max.get();
+    }
+
+    /** @return mean of the values recorded, or 0 if there were none */
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum() / count;
+    }
+
+    /**
+     * @param quantile a fraction in [0, 1]
+     * @return a value within the bucket precision of the smallest recorded
+     *         value v such that at least quantile of the values are at most
+     *         v, never more than max(); or 0 if there were no values
+     */
+    public long valueAt(double quantile) {
+        if (quantile < 0 || quantile > 1) throw new IllegalArgumentException("quantile must be in [0, 1]: " + quantile);
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long upper = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, max());
+            }
+        }
+        return max();
+    }
+
+    /** Forget every recorded value. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return name + "(count=" + count() + ", mean=" + String.format("%.1f", mean())
+                + ", p50=" + valueAt(0.5) + ", p90=" + valueAt(0.9) + ", p99=" + valueAt(0.99)
+                + ", p999=" + valueAt(0.999) + ", max=" + max() + ")";
+    }
+}
@@ -0,0 +1,127 @@
+package metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry of named counters and latency histograms.
+ *
+ * <p>Instrumentation is switched on for the whole process by running with
+ * the system property {@code metrics.enabled=true}. Instrumented code tests
+ * {@link #ENABLED}, a constant, before taking any timestamp or touching the
+ * registry, so when metrics are disabled the JIT removes the instrumentation
+ * entirely. Instrumented classes record into {@link #global()}.
+ *
+ * <p>Histograms of latencies are in nanoseconds. A registry can be dumped as
+ * text with {@link #toString()} or as JSON with {@link #toJson()}.
+ */
+public final class Metrics {
+
+    /** True iff instrumented code should record metrics. */
+    public static final boolean ENABLED = Boolean.getBoolean("metrics.enabled");
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    // Abstraction function:
+    //   represents the named histograms and counters in histograms and counters
+    // Representation invariant:
+    //   histograms.get(name).name().equals(name) for every key name
+    // Safety from rep exposure:
+    //   the maps are private and never returned; the histograms and counters
+    //   in them are shared deliberately, so that clients can record into them
+    // Thread safety argument:
+    //   the maps are concurrent and their values are thread-safe
+
+    /** @return the registry that instrumented classes record into */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * @param name name of a histogram
+     * @return the histogram with that name, created empty if there was none
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, Histogram::new);
+    }
+
+    /**
+     * @param name name of a counter
+     * @return the counter with that name, created at 0 if there was none
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /** Reset every histogram and counter, keeping their names. */
+    public void reset() {
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * @return a JSON object with a member "counters" mapping each counter
+     *         name to its value, and a member "histograms" mapping each
+     *         histogram name to an object with its count, mean, p50, p90,
+     *         p99, p999 and max; names are sorted
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"counters\":{");
+        String separator = "";
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            json.append(separator).append(quote(counter.getKey())).append(':').append(counter.getValue().sum());
+            separator = ",";
+        }
+        json.append("},\"histograms\":{");
+        separator = "";
+        for (Histogram histogram : new TreeMap<>(histograms).values()) {
+            json.append(separator).append(quote(histogram.name()))
+                    .append(":{\"count\":").append(histogram.count())
+                    .append(",\"mean\":").append(String.format(Locale.ROOT, "%.1f", histogram.mean()))
+                    .append(",\"p50\":").append(histogram.valueAt(0.5))
+                    .append(",\"p90\":").append(histogram.valueAt(0.9))
+                    .append(",\"p99\":").append(histogram.valueAt(0.99))
+                    .append(",\"p999\":").append(histogram.valueAt(0.999))
+                    .append(",\"max\":").append(histogram.max()).append('}');
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    private static String quote(String name) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : name.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /** @return one line per counter and then per histogram, sorted by name */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            text.append(counter.getKey()).append(" = ").append(counter.getValue().sum()).append('\n');
+        }
+        for (Histogram histogram : new TreeMap<>(histograms).values()) {
+            text.append(histogram).append('\n');
+        }
+        return text.toString();
+    }
+}
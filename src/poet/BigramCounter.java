@@ -0,0 +1,212 @@
+package poet;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the case-insensitive word bigrams of a UTF-8 corpus file in parallel.
+ *
+ * <p>The file is cut into chunks just after whitespace bytes, which in UTF-8
+ * never occur inside a multi-byte character, so no word is split between
+ * chunks. Each chunk is counted independently on a fork/join pool and the
+ * partial tables are merged pairwise, adding the one bigram that crosses each
+ * boundary between adjacent chunks. The merged counts are exactly those a
+ * sequential scan of the whole file would produce.
+ */
+class BigramCounter {
+
+    static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+    private final FileChannel channel;
+    private final long[] boundaries;
+
+    // Abstraction function:
+    //   represents the bigram counting job over the file behind channel, cut
+    //   into chunks [boundaries[i], boundaries[i+1])
+    // Representation invariant:
+    //   boundaries[0] == 0, boundaries[last] == channel size, boundaries strictly increasing
+    //   (except for an empty file, where boundaries == {0, 0})
+    //   every interior boundary is preceded by a whitespace byte
+    // Safety from rep exposure:
+    //   all fields are private and never returned
+
+    private BigramCounter(FileChannel channel, int chunkSize) throws IOException {
+        this.channel = channel;
+        this.boundaries = findBoundaries(chunkSize);
+    }
+
+    /**
+     * Count the bigrams of a corpus file.
+     *
+     * @param corpus path of a UTF-8 text file
+     * @param pool pool on which to count chunks
+     * @param chunkSize nominal number of bytes per chunk, must be positive
+     * @return the bigram counts of the whole corpus, with its first and last words
+     * @throws IOException if the corpus cannot be read or is not valid UTF-8
+     */
+    static Partial count(Path corpus, ForkJoinPool pool, int chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(corpus, StandardOpenOption.READ)) {
+            BigramCounter counter = new BigramCounter(channel, chunkSize);
+            try {
+                return pool.invoke(counter.new CountTask(0, counter.boundaries.length - 1));
+            } catch (RuntimeException e) {
+                // the pool may rethrow a copy of the task's exception that wraps the original
+                for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                    if (cause instanceof IOException) throw (IOException) cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private long[] findBoundaries(int chunkSize) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer window = ByteBuffer.allocate(256);
+        long next = chunkSize;
+        while (next < size) {
+            long boundary = size;
+            search:
+            for (long position = next; position < size; position += window.limit()) {
+                window.clear();
+                if (channel.read(window, position) <= 0) break;
+                window.flip();
+                for (int i = 0; i < window.limit(); i++) {
+                    byte b = window.get(i);
+                    if (b >= 0 && WordReader.isWhitespace((char) b)) {
+                        boundary = position + i + 1;
+                        break search;
+                    }
+                }
+            }
+            if (boundary >= size) break;
+            boundaries.add(boundary);
+            next = boundary + chunkSize;
+        }
+        boundaries.add(size);
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    private Partial countChunk(int chunk) throws IOException {
+        long start = boundaries[chunk];
+        ByteBuffer bytes = ByteBuffer.allocate((int) (boundaries[chunk + 1] - start));
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, start + bytes.position()) < 0) break;
+        }
+        bytes.flip();
+        CharBuffer chars = StandardCharsets.UTF_8.newDecoder().decode(bytes);
+        WordReader words = new WordReader(new CharArrayReader(chars.array(), chars.arrayOffset(), chars.remaining()));
+
+        WordTable table = new WordTable();
+        Partial partial = new Partial();
+        for (String target = words.nextFolded(table); target != null; target = words.nextFolded(table)) {
+            if (partial.last == null) {
+                partial.first = target;
+            } else {
+                partial.add(partial.last, target, 1);
+            }
+            partial.last = target;
+        }
+        return partial;
+    }
+
+    /**
+     * Bigram counts for a contiguous run of chunks, together with the first
+     * and last word of the run so that adjacent runs can be joined.
+     */
+    static class Partial {
+        private Map<String, Map<String, Integer>> counts = new HashMap<>();
+        private String first;
+        private String last;
+
+        /**
+         * @return map from each lowercase word to the lowercase words that
+         *         follow it in the run, with the number of times each follows it
+         */
+        Map<String, Map<String, Integer>> counts() {
+            return counts;
+        }
+
+        /** @return the last lowercase word of the run, or null if it has no words */
+        String last() {
+            return last;
+        }
+
+        private void add(String source, String target, int count) {
+            counts.computeIfAbsent(source, k -> new HashMap<>()).merge(target, count, Integer::sum);
+        }
+
+        // Mutates this to represent this run followed immediately by next.
+        private Partial append(Partial next) {
+            if (last != null && next.first != null) {
+                add(last, next.first, 1);
+            }
+            if (first == null) first = next.first;
+            if (next.last != null) last = next.last;
+
+            Map<String, Map<String, Integer>> smaller = next.counts;
+            if (smaller.size() > counts.size()) {
+                smaller = counts;
+                counts = next.counts;
+            }
+            for (Map.Entry<String, Map<String, Integer>> row : smaller.entrySet()) {
+                Map<String, Integer> merged = counts.get(row.getKey());
+                if (merged == null) {
+                    counts.put(row.getKey(), row.getValue());
+                    continue;
+                }
+                for (Map.Entry<String, Integer> cell : row.getValue().entrySet()) {
+                    merged.merge(cell.getKey(), cell.getValue(), Integer::sum);
+                }
+            }
+            return this;
+        }
+    }
+
+    private class CountTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        // counts chunks [from, to)
+        private CountTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from == 1) {
+                try {
+                    return countChunk(from);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            CountTask right = new CountTask(middle, to);
+            right.fork();
+            Partial left = new CountTask(from, middle).compute();
+            return left.append(right.join());
+        }
+    }
+}
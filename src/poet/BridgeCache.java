@@ -0,0 +1,127 @@
+package poet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+
+/**
+ * A thread-safe, size-bounded, least-recently-used cache of bridge words.
+ *
+ * <p>Entries are spread over independently locked segments by the hash of the
+ * word pair, so concurrent lookups of different pairs rarely contend. Every
+ * entry belongs to a version of the graph; a lookup made for a newer version
+ * discards the whole segment, so nothing computed from an older graph is ever
+ * returned.
+ */
+class BridgeCache {
+
+    private static final int MAX_SEGMENTS = 16;
+    // stands for "no bridge", since a cached null would look like a miss
+    private static final String NONE = new String("");
+
+    private final int maxEntries;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Abstraction function:
+    //   represents the union of the mappings "w1 w2" -> bridge in segments,
+    //   with NONE meaning no bridge
+    // Representation invariant:
+    //   each key is in the segment selected by its hash
+    //   each segment holds at most its share of maxEntries, and the shares sum to maxEntries
+    // Safety from rep exposure:
+    //   all fields are private; only single words and immutable stats are returned
+
+    /**
+     * @param maxEntries maximum number of word pairs to keep, at least 1
+     */
+    BridgeCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        segments = new Segment[Math.max(1, Math.min(MAX_SEGMENTS, maxEntries))];
+        for (int i = 0; i < segments.length; i++) {
+            int share = maxEntries / segments.length + (i < maxEntries % segments.length ? 1 : 0);
+            segments[i] = new Segment(Math.max(1, share));
+        }
+    }
+
+    /**
+     * Look up the bridge between two words, computing and caching it on a miss.
+     *
+     * @param w1 lowercase first word
+     * @param w2 lowercase second word
+     * @param version version of the graph that search reads
+     * @param search computes the bridge from w1 to w2, or null if there is none
+     * @return the bridge from w1 to w2, or null if there is none
+     */
+    String bridge(String w1, String w2, long version, BinaryOperator<String> search) {
+        // words contain no whitespace, so the space keeps distinct pairs distinct
+        String key = w1 + " " + w2;
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % segments.length];
+        String bridge = segment.get(key, version);
+        if (bridge != null) {
+            hits.increment();
+            return bridge == NONE ? null : bridge;
+        }
+        misses.increment();
+        bridge = search.apply(w1, w2);
+        segment.put(key, bridge == null ? NONE : bridge, version);
+        return bridge;
+    }
+
+    /** @return maximum number of word pairs kept */
+    int maxEntries() {
+        return maxEntries;
+    }
+
+    /** @return a snapshot of the cache's counters */
+    CacheStats stats() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    private class Segment extends LinkedHashMap<String, String> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+        private long version = 0;
+
+        private Segment(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        private synchronized String get(String key, long version) {
+            if (version > this.version) {
+                clear();
+                this.version = version;
+            }
+            return version == this.version ? super.get(key) : null;
+        }
+
+        private synchronized void put(String key, String bridge, long version) {
+            if (version > this.version) {
+                clear();
+                this.version = version;
+            }
+            if (version == this.version) super.put(key, bridge);
+        }
+
+        @Override
+        public synchronized int size() {
+            return super.size();
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            if (size() <= maxEntries) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package poet;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A precomputed table of bridge words for an affinity graph.
+ *
+ * <p>The table is organized in rows, one per first word w1, mapping each
+ * second word w2 to the bridge word b that maximizes the weight of
+ * w1 -> b -> w2. A row is computed in one pass over the two-hop neighborhood
+ * of w1, visiting candidate bridges in the same order as
+ * {@code GraphPoet.findBridgeWord}, so ties are broken identically.
+ *
+ * <p>Rows are either all computed up front, or computed on first use and kept
+ * in a bounded number of least-recently-used segments, as in
+ * {@link BridgeCache}, so that the rows of the words in use stay cached
+ * whatever order they arrive in. An index describes one version of
+ * the graph; once the graph is mutated it must be rebuilt, or, if the edges
+ * that changed are known, updated. Lookups are safe for concurrent use
+ * provided the graph is not mutated.
+ */
+class BridgeIndex {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final VersionedGraph graph;
+    private volatile long version;
+    private final int maxRows;
+    private final Map<String, Map<String, String>> rows;
+    private final Segment[] segments;
+
+    // Abstraction function:
+    //   represents the function (w1, w2) -> best bridge word from w1 to w2 in
+    //   graph as it was at version, of which the rows in rows, or in
+    //   segments if the index is lazy, are already computed
+    // Representation invariant:
+    //   exactly one of rows and segments is non-null; rows iff maxRows == Integer.MAX_VALUE
+    //   each key is in the segment selected by its hash, and the segments'
+    //     shares of maxRows sum to maxRows
+    //   every stored row of w1 equals row(w1)
+    // Safety from rep exposure:
+    //   all fields are private; rows are never returned, only single words
+    // Thread safety argument:
+    //   version is volatile, rows is concurrent, and each segment is guarded
+    //   by its own lock; update() must not run concurrently with bridge()
+
+    private BridgeIndex(VersionedGraph graph, int maxRows) {
+        this.graph = graph;
+        this.version = graph.version();
+        this.maxRows = maxRows;
+        if (maxRows == Integer.MAX_VALUE) {
+            rows = new ConcurrentHashMap<>();
+            segments = null;
+        } else {
+            rows = null;
+            segments = new Segment[Math.max(1, Math.min(MAX_SEGMENTS, maxRows))];
+            for (int i = 0; i < segments.length; i++) {
+                int share = maxRows / segments.length + (i < maxRows % segments.length ? 1 : 0);
+                segments[i] = new Segment(Math.max(1, share));
+            }
+        }
+    }
+
+    /**
+     * Compute every row of the index.
+     *
+     * @param graph affinity graph
+     * @return an index with a row for every vertex of graph
+     */
+    static BridgeIndex materialize(VersionedGraph graph) {
+        BridgeIndex index = new BridgeIndex(graph, Integer.MAX_VALUE);
+        for (String w1 : graph.vertices()) {
+            index.rows.put(w1, index.row(w1));
+        }
+        return index;
+    }
+
+    /**
+     * Make an index whose rows are computed on first use. Once maxRows rows
+     * are stored, storing another evicts the least recently used row in its
+     * segment. The bound counts rows, not entries: the row of a word with
+     * many two-hop neighbors, such as a hub, may hold an entry for nearly
+     * every vertex of the graph.
+     *
+     * @param graph affinity graph
+     * @param maxRows maximum number of rows to keep, at least 1
+     * @return an empty lazily-filled index
+     */
+    static BridgeIndex lazy(VersionedGraph graph, int maxRows) {
+        return new BridgeIndex(graph, maxRows);
+    }
+
+    /** @return the version of the graph this index describes */
+    long version() {
+        return version;
+    }
+
+    /**
+     * @return an index of the same kind describing the current version of the graph
+     */
+    BridgeIndex rebuild() {
+        return maxRows == Integer.MAX_VALUE ? materialize(graph) : lazy(graph, maxRows);
+    }
+
+    /**
+     * Bring the index up to date after the graph has been mutated only by
+     * adding or reweighting edges out of the given words. A row is affected
+     * only if its first word is one of those words or an immediate source of
+     * one, so only those rows are recomputed (or, in a lazy index, dropped),
+     * in time independent of the size of the rest of the graph.
+     *
+     * @param changedSources every word some edge out of which has been added
+     *                       or reweighted since the version of this index
+     */
+    void update(Collection<String> changedSources) {
+        Set<String> stale = new HashSet<>();
+        for (String source : changedSources) {
+            stale.add(source);
+            graph.forEachSource(source, (w1, weight) -> stale.add(w1));
+        }
+        for (String w1 : stale) {
+            if (rows != null) {
+                rows.put(w1, row(w1));
+            } else {
+                Segment segment = segment(w1);
+                synchronized (segment) {
+                    segment.remove(w1);
+                }
+            }
+        }
+        version = graph.version();
+    }
+
+    /**
+     * @param w1 lowercase first word
+     * @param w2 lowercase second word
+     * @return the bridge word b maximizing the weight of w1 -> b -> w2, or
+     *         null if there is no such two-edge path
+     */
+    String bridge(String w1, String w2) {
+        if (rows != null) {
+            Map<String, String> row = rows.get(w1);
+            if (row == null) {
+                row = row(w1);
+                rows.putIfAbsent(w1, row);
+            }
+            return row.get(w2);
+        }
+        Segment segment = segment(w1);
+        Map<String, String> row;
+        synchronized (segment) {
+            row = segment.get(w1);
+        }
+        if (row == null) {
+            // computed outside the lock, so that lookups of other rows in
+            // the segment need not wait for it
+            row = row(w1);
+            synchronized (segment) {
+                segment.put(w1, row);
+            }
+        }
+        return row.get(w2);
+    }
+
+    /** @return number of rows currently stored */
+    int rows() {
+        if (rows != null) return rows.size();
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segment(String w1) {
+        return segments[(w1.hashCode() & 0x7fffffff) % segments.length];
+    }
+
+    // Maps every w2 reachable from w1 in two edges to its best bridge.
+    private Map<String, String> row(String w1) {
+        Map<String, Integer> targets = graph.targets(w1);
+        if (targets.isEmpty()) return Collections.emptyMap();
+        Map<String, Integer> bestWeights = new HashMap<>();
+        Map<String, String> bridges = new HashMap<>();
+        for (String word : targets.keySet()) {
+            int firstWeight = targets.get(word);
+            graph.forEachTarget(word, (w2, secondWeight) -> {
+                int combinedWeight = firstWeight + secondWeight;
+                if (combinedWeight > bestWeights.getOrDefault(w2, 0)) {
+                    bestWeights.put(w2, combinedWeight);
+                    bridges.put(w2, word);
+                }
+            });
+        }
+        return bridges;
+    }
+
+    /**
+     * Some of the rows of a lazy index, in access order, evicting the least
+     * recently used row once more than its share of maxRows are stored.
+     */
+    private static class Segment extends LinkedHashMap<String, Map<String, String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxRows;
+
+        private Segment(int maxRows) {
+            super(16, 0.75f, true);
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+            return size() > maxRows;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package poet;
+
+/**
+ * An immutable snapshot of the counters of a {@link GraphPoet}'s bridge-word cache.
+ */
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long size;
+
+    // Abstraction function:
+    //   represents the cache counters hits, misses and evictions, and the
+    //   number of entries size, at the time the snapshot was taken
+    // Representation invariant:
+    //   all fields are non-negative
+    // Safety from rep exposure:
+    //   all fields are private, final and primitive
+
+    CacheStats(long hits, long misses, long evictions, long size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert hits >= 0 && misses >= 0 && evictions >= 0 && size >= 0;
+    }
+
+    /** @return number of lookups answered from the cache */
+    public long hits() {
+        return hits;
+    }
+
+    /** @return number of lookups that had to search the graph */
+    public long misses() {
+        return misses;
+    }
+
+    /** @return number of entries dropped to stay within the size bound */
+    public long evictions() {
+        return evictions;
+    }
+
+    /** @return number of entries in the cache */
+    public long size() {
+        return size;
+    }
+
+    /** @return fraction of lookups answered from the cache, or 0 if there were none */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats(hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", size=" + size + ", hitRate=" + String.format("%.3f", hitRate()) + ")";
+    }
+}
@@ -2,22 +2,66 @@ package poet;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import graph.FrozenGraph;
 import graph.Graph;
+import graph.GraphBuilder;
+import graph.MappedGraph;
+import graph.MeteredGraph;
+import metrics.Histogram;
+import metrics.Metrics;
 
 /**
  * A graph-based poetry generator.
+ *
+ * <p>When {@link Metrics#ENABLED metrics are enabled}, the poet records into
+ * {@link Metrics#global()} the latency of every call to its graph (under
+ * "graph."), of poem generation, and of each phase of building the graph:
+ * reading the corpus, tokenizing it, and updating the graph.
  */
 public class GraphPoet {
+
+    // latencies in nanoseconds, recorded only if Metrics.ENABLED
+    private static final Histogram INGEST = Metrics.global().histogram("poet.ingest");
+    private static final Histogram INGEST_READ = Metrics.global().histogram("poet.ingest.read");
+    private static final Histogram INGEST_TOKENIZE = Metrics.global().histogram("poet.ingest.tokenize");
+    private static final Histogram INGEST_UPDATE = Metrics.global().histogram("poet.ingest.update");
+    private static final Histogram PARALLEL_COUNT = Metrics.global().histogram("poet.parallel.count");
+    private static final Histogram PARALLEL_BUILD = Metrics.global().histogram("poet.parallel.build");
+    private static final Histogram LOAD = Metrics.global().histogram("poet.load");
+    private static final Histogram INDEX = Metrics.global().histogram("poet.indexBridges");
+    private static final Histogram POEM = Metrics.global().histogram("poet.poem");
+    private static final Histogram POEM_STREAM = Metrics.global().histogram("poet.poem.stream");
+    private static final Histogram POEMS = Metrics.global().histogram("poet.poems");
+    private static final Histogram WALK = Metrics.global().histogram("poet.walk");
     
-    private final Graph<String> graph = Graph.empty();
+    private final VersionedGraph graph;
+    private volatile BridgeIndex bridges = null;
+    private volatile BridgeCache cache = null;
+    private volatile HopSearch hops = null;
+    private volatile RandomWalk walks = null;
+    private String lastWord = null;
     public Graph<String> getGraph(){
     	return this.graph;
     }
     // Representation invariant:
     // The graph should contain vertices as words and edges between words, with non-negative weights.
+    // The bridge index and cache, if any, only answer for the current version of the graph.
+    // The cache, if any, only holds bridges found in the current bridging mode, one hop or hops.
+    // The random walker, if any, may be for an older version of the graph, and is then replaced before use.
+    // lastWord is the lowercase last word of all the text ingested so far, or null if there was none.
     // Safety from rep exposure:
     // The graph is encapsulated, and we do not expose internal structures to the outside.
 
@@ -28,31 +72,249 @@ public class GraphPoet {
      * @throws IOException if the corpus file cannot be found or read
      */
     public GraphPoet(File corpus) throws IOException {
-        List<String> lines = Files.readAllLines(Paths.get(corpus.toURI()));
-        List<String> words = extractWords(lines);
-        
-        // Build the graph from the corpus
-        for (int i = 0; i < words.size() - 1; i++) {
-            String source = words.get(i);
-            String target = words.get(i + 1);
-            graph.set(source, target, graph.sources(target).getOrDefault(source, 0) + 1);
+        this(corpus.toPath());
+    }
+
+    /**
+     * Create a new poet with the graph from a UTF-8 corpus file, streaming it
+     * rather than loading it into memory.
+     * 
+     * @param corpus path of the text file from which to derive the poet's affinity graph
+     * @throws IOException if the corpus file cannot be found or read
+     */
+    public GraphPoet(Path corpus) throws IOException {
+        this(Corpus.read(corpus));
+    }
+
+    /**
+     * Create a new poet with the graph from a UTF-8 corpus stream.
+     * 
+     * @param corpus stream of text from which to derive the poet's affinity graph;
+     *               it is read to the end but not closed
+     * @throws IOException if the corpus cannot be read
+     */
+    public GraphPoet(InputStream corpus) throws IOException {
+        this(new InputStreamReader(corpus, StandardCharsets.UTF_8.newDecoder()));
+    }
+
+    /**
+     * Create a new poet with the graph from a corpus stream.
+     * 
+     * @param corpus stream of text from which to derive the poet's affinity graph;
+     *               it is read to the end but not closed
+     * @throws IOException if the corpus cannot be read
+     */
+    public GraphPoet(Reader corpus) throws IOException {
+        this(Corpus.read(corpus));
+    }
+
+    /**
+     * Create a new poet with the graph from a UTF-8 corpus file, counting word
+     * pairs in parallel on the common fork/join pool. The resulting graph is
+     * the same as the one built by {@link #GraphPoet(Path)}.
+     * 
+     * @param corpus path of the text file from which to derive the poet's affinity graph
+     * @return a new poet for corpus
+     * @throws IOException if the corpus file cannot be found or read
+     */
+    public static GraphPoet parallel(Path corpus) throws IOException {
+        return parallel(corpus, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new poet with the graph from a UTF-8 corpus file, counting word
+     * pairs in parallel. The resulting graph is the same as the one built by
+     * {@link #GraphPoet(Path)}.
+     * 
+     * @param corpus path of the text file from which to derive the poet's affinity graph
+     * @param pool pool on which to count the chunks of the corpus
+     * @return a new poet for corpus
+     * @throws IOException if the corpus file cannot be found or read
+     */
+    public static GraphPoet parallel(Path corpus, ForkJoinPool pool) throws IOException {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        BigramCounter.Partial counts = BigramCounter.count(corpus, pool, BigramCounter.DEFAULT_CHUNK_SIZE);
+        if (Metrics.ENABLED) {
+            PARALLEL_COUNT.recordSince(start);
+            start = System.nanoTime();
+        }
+        int edges = 0;
+        for (Map<String, Integer> row : counts.counts().values()) {
+            edges += row.size();
         }
+        // every word but the last has an outgoing pair, so is a row of counts
+        GraphPoet poet = new GraphPoet(Graph.<String>builder(counts.counts().size() + 1, edges).addAll(counts.counts()).build());
+        poet.lastWord = counts.last();
+        if (Metrics.ENABLED) PARALLEL_BUILD.recordSince(start);
+        return poet;
     }
 
     /**
-     * Extract words from the corpus, treating them as case-insensitive and split by spaces/newlines.
+     * Create a poet whose graph is read from a binary graph file written by
+     * {@link #save(Path)}. The file is memory-mapped rather than read, so the
+     * poet is ready in time independent of the size of the graph, and its
+     * graph lives off the heap. The graph is immutable, as after
+     * {@link #freeze()}.
+     * 
+     * @param graphFile path of the binary graph file
+     * @return a new poet for the graph in graphFile
+     * @throws IOException if the file cannot be read or is not a graph file
      */
-    private List<String> extractWords(List<String> lines) {
-        List<String> words = new ArrayList<>();
-        for (String line : lines) {
-            String[] tokens = line.split("\\s+");
-            for (String token : tokens) {
-                if (!token.isEmpty()) {
-                    words.add(token.toLowerCase());
-                }
+    public static GraphPoet load(Path graphFile) throws IOException {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        GraphPoet poet = new GraphPoet(MappedGraph.open(graphFile));
+        if (Metrics.ENABLED) LOAD.recordSince(start);
+        return poet;
+    }
+
+    private GraphPoet(Graph<String> graph) {
+        this.graph = new VersionedGraph(Metrics.ENABLED ? new MeteredGraph<>(graph, Metrics.global(), "graph") : graph);
+    }
+
+    private GraphPoet(Corpus corpus) {
+        this(corpus.graph);
+        this.lastWord = corpus.lastWord;
+    }
+
+    /**
+     * The graph of a whole corpus, built in bulk, and the corpus's last word.
+     */
+    private static class Corpus {
+        private final Graph<String> graph;
+        private final String lastWord;
+
+        private Corpus(Graph<String> graph, String lastWord) {
+            this.graph = graph;
+            this.lastWord = lastWord;
+        }
+
+        static Corpus read(Path corpus) throws IOException {
+            try (Reader reader = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+                return read(reader);
             }
         }
-        return words;
+
+        // Count every word pair of the corpus in a graph builder, which sums
+        // repeated pairs in place, and build the graph once at the end.
+        static Corpus read(Reader corpus) throws IOException {
+            GraphBuilder<String> builder = Graph.builder();
+            String last = scan(corpus, null, (source, target) -> builder.add(source, target, 1));
+            return new Corpus(builder.build(), last);
+        }
+    }
+
+    /**
+     * Write the poet's graph to a binary graph file that {@link #load(Path)}
+     * can map. Creates or replaces the file.
+     * 
+     * @param graphFile path of the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path graphFile) throws IOException {
+        MappedGraph.write(graph, graphFile);
+    }
+
+    /**
+     * Add more text to the poet's corpus, as if it had been appended to the
+     * text the poet was created from: the weight of each word pair in text is
+     * added to the graph, including the pair formed by the last word ingested
+     * so far and the first word of text. Takes time proportional to the
+     * length of text, plus the work of updating the rows of the bridge index,
+     * if any, whose first word is a word of text or precedes one. Cached
+     * bridge words are invalidated. Must not be called concurrently with any
+     * other method of this poet.
+     * 
+     * @param text text to append to the corpus
+     * @throws UnsupportedOperationException if the poet's graph is immutable,
+     *         after {@link #freeze()} or {@link #load(Path)}
+     */
+    public void addText(CharSequence text) {
+        try {
+            addCorpus(new StringReader(text.toString()));
+        } catch (IOException e) {
+            throw new AssertionError("a string reader cannot fail", e);
+        }
+    }
+
+    /**
+     * Add a UTF-8 corpus file to the poet's corpus, as {@link #addText(CharSequence)}
+     * does, streaming it rather than loading it into memory.
+     * 
+     * @param corpus path of the text file to append to the corpus
+     * @throws IOException if the corpus file cannot be found or read
+     * @throws UnsupportedOperationException if the poet's graph is immutable
+     */
+    public void addCorpus(Path corpus) throws IOException {
+        try (Reader reader = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+            addCorpus(reader);
+        }
+    }
+
+    /**
+     * Add a corpus stream to the poet's corpus, as {@link #addText(CharSequence)} does.
+     * 
+     * @param corpus stream of text to append to the corpus; it is read to the
+     *               end but not closed
+     * @throws IOException if the corpus cannot be read
+     * @throws UnsupportedOperationException if the poet's graph is immutable
+     */
+    public void addCorpus(Reader corpus) throws IOException {
+        long version = graph.version();
+        Set<String> changed = ingest(corpus);
+        BridgeIndex index = bridges;
+        // an index that was already stale may be missing other changes, and
+        // is rebuilt in full on its next use instead
+        if (index != null && index.version() == version && !changed.isEmpty()) {
+            index.update(changed);
+        }
+    }
+
+    /**
+     * Add the corpus to the graph one word pair at a time, treating words as
+     * case-insensitive and split by whitespace, and continuing from the last
+     * word of any earlier corpus. Memory use is bounded by the vocabulary of
+     * the corpus, not by its length.
+     * 
+     * @return the words whose outgoing edges changed
+     */
+    private Set<String> ingest(Reader corpus) throws IOException {
+        Set<String> changed = new HashSet<>();
+        lastWord = scan(corpus, lastWord, (source, target) -> {
+            graph.increment(source, target, 1);
+            changed.add(source);
+        });
+        return changed;
+    }
+
+    /*
+     * Pass each word pair of the corpus to pair, treating words as
+     * case-insensitive and split by whitespace, starting with the pair of
+     * first and the corpus's first word if first is not null. Returns the
+     * lowercase last word, or first if the corpus has no words.
+     */
+    private static String scan(Reader corpus, String first, BiConsumer<String, String> pair) throws IOException {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long updateNanos = 0;
+        TimedReader timed = Metrics.ENABLED ? new TimedReader(corpus) : null;
+        WordReader words = new WordReader(Metrics.ENABLED ? timed : corpus);
+        WordTable table = new WordTable();
+        String source = first;
+        for (String target = words.nextFolded(table); target != null; target = words.nextFolded(table)) {
+            if (source != null) {
+                long update = Metrics.ENABLED ? System.nanoTime() : 0;
+                pair.accept(source, target);
+                if (Metrics.ENABLED) updateNanos += System.nanoTime() - update;
+            }
+            source = target;
+        }
+        if (Metrics.ENABLED) {
+            long total = System.nanoTime() - start;
+            INGEST.record(total);
+            INGEST_READ.record(timed.nanos());
+            INGEST_UPDATE.record(updateNanos);
+            INGEST_TOKENIZE.record(total - timed.nanos() - updateNanos);
+        }
+        return source;
     }
     
     /**
@@ -62,19 +324,123 @@ public class GraphPoet {
      * @return poem (as described above)
      */
     public String poem(String input) {
-        String[] inputWords = input.split("\\s+");
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        String poem = assemble(WordReader.split(input), this::bridge);
+        if (Metrics.ENABLED) POEM.recordSince(start);
+        return poem;
+    }
+
+    /**
+     * Generate a poem from a stream, writing it out as it goes. Only the
+     * current word pair is held in memory, however long the input. The output
+     * is exactly poem(s) for the string s of all of input, except that when s
+     * is nonempty and all whitespace, for which poem(s) fails, nothing is
+     * written.
+     * 
+     * @param input stream from which to create the poem; it is read to the
+     *              end but not closed
+     * @param output where to write the poem; it is not flushed or closed
+     * @throws IOException if input cannot be read or output cannot be written
+     */
+    public void poem(Reader input, Appendable output) throws IOException {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        writePoem(input, output);
+        if (Metrics.ENABLED) POEM_STREAM.recordSince(start);
+    }
+
+    private void writePoem(Reader input, Appendable output) throws IOException {
+        WordReader words = new WordReader(input);
+        // like split("\\s+"), leading whitespace makes an empty first word
+        boolean leadingWhitespace = words.atWhitespace();
+        String previous = leadingWhitespace ? "" : words.next();
+        if (previous == null) {
+            // the input is empty, which poem("") writes as ""
+            return;
+        }
+        String w1 = previous.toLowerCase();
+        for (String word = words.next(); word != null; word = words.next()) {
+            String w2 = word.toLowerCase();
+            output.append(previous).append(' ');
+            String bridge = bridge(w1, w2);
+            if (bridge != null) {
+                output.append(bridge).append(' ');
+            }
+            previous = word;
+            w1 = w2;
+        }
+        if (leadingWhitespace && previous.isEmpty()) {
+            // the input is all whitespace
+            return;
+        }
+        output.append(previous);
+    }
+
+    /**
+     * Generate a poem for each of a batch of inputs. Each distinct pair of
+     * adjacent words in the batch has its bridge word looked up only once,
+     * and the lookups run in parallel on the common fork/join pool, so the
+     * cost per input falls as the batch shares more word pairs.
+     * 
+     * @param inputs strings from which to create the poems
+     * @return the poems, in the order of inputs; the i-th poem is poem(inputs.get(i))
+     */
+    public List<String> poems(List<String> inputs) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        List<String[]> inputWords = new ArrayList<>(inputs.size());
+        Map<String, Set<String>> pairs = new HashMap<>();
+        for (String input : inputs) {
+            String[] words = WordReader.split(input);
+            inputWords.add(words);
+            String w1 = words.length == 0 ? null : words[0].toLowerCase();
+            for (int i = 0; i < words.length - 1; i++) {
+                String w2 = words[i + 1].toLowerCase();
+                pairs.computeIfAbsent(w1, w -> new HashSet<>()).add(w2);
+                w1 = w2;
+            }
+        }
+
+        // pairs are grouped by first word, so that an exhaustive search builds
+        // the targets of each first word only once
+        boolean exhaustive = cache == null && bridges == null && hops == null && graph.frozen() == null;
+        Map<String, Map<String, String>> resolved = new ConcurrentHashMap<>();
+        pairs.entrySet().parallelStream().forEach(group -> {
+            String w1 = group.getKey();
+            Map<String, Integer> targets = exhaustive ? graph.targets(w1) : null;
+            Map<String, String> row = new HashMap<>();
+            for (String w2 : group.getValue()) {
+                String bridge = exhaustive ? findBridgeWord(w1, targets, w2) : bridge(w1, w2);
+                if (bridge != null) row.put(w2, bridge);
+            }
+            resolved.put(w1, row);
+        });
+
+        List<String> poems = new ArrayList<>(inputWords.size());
+        for (String[] words : inputWords) {
+            poems.add(assemble(words, (w1, w2) -> resolved.get(w1).get(w2)));
+        }
+        if (Metrics.ENABLED) {
+            POEMS.recordSince(start);
+            Metrics.global().counter("poet.poems.inputs").add(inputs.size());
+        }
+        return poems;
+    }
+
+    // Join the words of an input, inserting after each word but the last the
+    // bridge to the next word, if there is one.
+    private static String assemble(String[] inputWords, BinaryOperator<String> bridges) {
         StringBuilder poem = new StringBuilder();
 
+        String w1 = inputWords.length == 0 ? null : inputWords[0].toLowerCase();
         for (int i = 0; i < inputWords.length - 1; i++) {
-            String w1 = inputWords[i].toLowerCase();
             String w2 = inputWords[i + 1].toLowerCase();
             poem.append(inputWords[i]).append(" ");
 
             // Find a bridge word between w1 and w2 if possible
-            String bridge = findBridgeWord(w1, w2);
+            String bridge = bridges.apply(w1, w2);
             if (bridge != null) {
                 poem.append(bridge).append(" ");
             }
+            w1 = w2;
         }
 
         // Add the last word of the input
@@ -82,11 +448,193 @@ public class GraphPoet {
         return poem.toString();
     }
 
+    /**
+     * Generate text by a weighted random walk over the affinity graph.
+     * 
+     * @param start word at which to start, matched case-insensitively
+     * @param length maximum number of words, including start, at least 1
+     * @param seed seed of the walk; the same seed on the same graph gives
+     *             the same text
+     * @return the lowercase words of the walk, as written by
+     *         {@link #walk(String, int, SplittableRandom, Appendable)}
+     */
+    public String walk(String start, int length, long seed) {
+        StringBuilder text = new StringBuilder();
+        try {
+            walk(start, length, new SplittableRandom(seed), text);
+        } catch (IOException e) {
+            throw new AssertionError("a string builder cannot fail", e);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Generate text by a weighted random walk over the affinity graph: after
+     * start, each next word is a target of the previous word, chosen with
+     * probability proportional to the weight of the edge to it. The walk ends
+     * after length words, or earlier at a word with no outgoing edges, which
+     * may be start itself.
+     * 
+     * <p>Each word's sampling table is built the first time a walk leaves it
+     * and kept until the graph is mutated, so steps take constant time and
+     * allocate nothing once the words walked are warm. Walks may run
+     * concurrently, each with its own random generator, provided the graph
+     * is not mutated.
+     * 
+     * @param start word at which to start, matched case-insensitively
+     * @param length maximum number of words, including start, at least 1
+     * @param random source of randomness for the walk
+     * @param output where to write the lowercase words of the walk, separated
+     *               by single spaces; it is not flushed or closed
+     * @throws IOException if output cannot be written
+     */
+    public void walk(String start, int length, SplittableRandom random, Appendable output) throws IOException {
+        if (length < 1) throw new IllegalArgumentException("length must be positive: " + length);
+        long begin = Metrics.ENABLED ? System.nanoTime() : 0;
+        RandomWalk walks = this.walks;
+        if (walks == null || walks.version() != graph.version()) {
+            walks = new RandomWalk(graph);
+            this.walks = walks;
+        }
+        walks.walk(start.toLowerCase(), length, random, output);
+        if (Metrics.ENABLED) WALK.recordSince(begin);
+    }
+
+    /**
+     * Precompute the bridge word for every pair of words joined by a two-edge
+     * path, so that poem() only does hash lookups. Poems are unchanged. If the
+     * graph is later mutated through {@link #getGraph()}, the index is rebuilt
+     * on the next call to poem().
+     */
+    public void indexBridges() {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        bridges = BridgeIndex.materialize(graph);
+        if (Metrics.ENABLED) INDEX.recordSince(start);
+    }
+
+    /**
+     * Index bridge words lazily: the bridges from a first word are computed
+     * the first time poem() meets it, and kept for the maxWords most recently
+     * used first words, so a word used again after being evicted has its
+     * bridges computed again. Poems are unchanged. If the graph is later mutated through
+     * {@link #getGraph()}, the index is emptied on the next call to poem().
+     * 
+     * @param maxWords maximum number of first words whose bridges are kept,
+     *                 at least 1; the bridges of one word may cover most of
+     *                 the graph's vertices
+     */
+    public void indexBridges(int maxWords) {
+        bridges = BridgeIndex.lazy(graph, maxWords);
+    }
+
+    /**
+     * Cache the bridge words of the most recently used word pairs. Poems are
+     * unchanged, and mutating the graph through {@link #getGraph()}
+     * invalidates the cache. Replaces any previous cache and its counters.
+     * 
+     * @param maxEntries maximum number of word pairs to keep, at least 1
+     */
+    public void cacheBridges(int maxEntries) {
+        cache = new BridgeCache(maxEntries);
+    }
+
+    /**
+     * Bridge each pair of adjacent words by the heaviest path of at most
+     * maxHops edges between them, rather than by the heaviest path of exactly
+     * two: poem() inserts all the intermediate words of the path, and a path
+     * weighs the sum of the weights of its edges. Paths are searched best
+     * first under a budget, so the latency of each search is bounded; if the
+     * budget runs out, the heaviest path found so far is used, and the search
+     * is counted by {@link #truncatedHopSearches()}. The bridge
+     * index, if any, is not used while this mode is on, and any bridge cache
+     * is emptied.
+     * 
+     * @param maxHops maximum number of edges in a bridging path, at least 2;
+     *                2 restores the default single-word bridges
+     * @param maxExpansions maximum number of nodes one search visits, at least
+     *                      1: edges into the second word read, at most half
+     *                      of them, plus partial paths expanded
+     * @param timeBudget maximum time one search may take, positive
+     * @param unit unit of timeBudget
+     */
+    public void bridgeHops(int maxHops, int maxExpansions, long timeBudget, TimeUnit unit) {
+        HopSearch search = new HopSearch(graph, maxHops, maxExpansions, unit.toNanos(timeBudget));
+        hops = maxHops == 2 ? null : search;
+        BridgeCache cache = this.cache;
+        if (cache != null) this.cache = new BridgeCache(cache.maxEntries());
+    }
+
+    /**
+     * @return number of multi-hop bridge searches since {@link #bridgeHops}
+     *         was last called that ran out of their budget, and so bridged by
+     *         the heaviest path they found rather than one proven heaviest;
+     *         0 if multi-hop bridging is off
+     */
+    public long truncatedHopSearches() {
+        HopSearch hops = this.hops;
+        return hops == null ? 0 : hops.truncated();
+    }
+
+    /**
+     * @return the counters of the bridge-word cache, or null if
+     *         {@link #cacheBridges(int)} has not been called
+     */
+    public CacheStats bridgeCacheStats() {
+        BridgeCache cache = this.cache;
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * Replace the poet's graph with an immutable snapshot, which concurrent
+     * poem() calls can read without locking, and in which bridge words are
+     * found from the heaviest few edges of each word rather than from all of
+     * them. Poems are unchanged; from now on
+     * mutating the graph through {@link #getGraph()} throws
+     * UnsupportedOperationException.
+     */
+    public void freeze() {
+        graph.freezeInPlace();
+    }
+
+    // Look up the bridge from w1 to w2 through the cache and index, if any.
+    private String bridge(String w1, String w2) {
+        BridgeCache cache = this.cache;
+        if (cache == null) {
+            return searchBridge(w1, w2);
+        }
+        return cache.bridge(w1, w2, graph.version(), this::searchBridge);
+    }
+
+    private String searchBridge(String w1, String w2) {
+        HopSearch hops = this.hops;
+        if (hops != null) {
+            return hops.bridge(w1, w2);
+        }
+        BridgeIndex index = bridges;
+        if (index == null) {
+            return findBridgeWord(w1, w2);
+        }
+        if (index.version() != graph.version()) {
+            index = index.rebuild();
+            bridges = index;
+        }
+        return index.bridge(w1, w2);
+    }
+
     /**
      * Find a bridge word between two words that maximizes the weight of w1 -> b -> w2 path.
      */
     private String findBridgeWord(String w1, String w2) {
-        Map<String, Integer> targets = graph.targets(w1);
+        // a frozen graph reads only the heaviest neighbors, without copying any adjacency
+        FrozenGraph<String> frozen = graph.frozen();
+        if (frozen != null) {
+            return frozen.heaviestTwoHop(w1, w2);
+        }
+        return findBridgeWord(w1, graph.targets(w1), w2);
+    }
+
+    // Find the bridge word from w1 to w2 exhaustively, given targets, the targets of w1.
+    private String findBridgeWord(String w1, Map<String, Integer> targets, String w2) {
         Map<String, Integer> sources = graph.sources(w2);
         
         // Find a common word between the two, and pick the one with the maximum combined weight
@@ -109,9 +657,9 @@ public class GraphPoet {
     private void checkRep() {
         // Ensure all edges have non-negative weights.
         for (String vertex : graph.vertices()) {
-            for (int weight : graph.targets(vertex).values()) {
+            graph.forEachTarget(vertex, (target, weight) -> {
                 assert weight >= 0;
-            }
+            });
         }
     }
     
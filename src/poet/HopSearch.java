@@ -0,0 +1,358 @@
+package poet;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import graph.Graph;
+import metrics.Metrics;
+
+/**
+ * A bounded best-first search for the heaviest path of at most a given
+ * number of edges between two words of an affinity graph.
+ *
+ * <p>The weight of a path is the sum of the weights of its edges, as for the
+ * two-edge paths of {@code GraphPoet.findBridgeWord}, and only simple paths
+ * are considered. Partial paths from the first word are expanded in order of
+ * an upper bound on the weight of any completion: every remaining edge but
+ * the last weighs at most the heaviest edge of the graph, and the last weighs
+ * at most the heaviest edge into the second word. The search ends once no
+ * partial path can beat the best complete path found, which is then the
+ * heaviest, or when it runs out of its node, frontier or time budget, in
+ * which case the best path found so far is returned and the search is
+ * counted as {@link #truncated() truncated}.
+ *
+ * <p>The node budget covers the edges into the second word as well as the
+ * partial paths expanded, so that a second word with many sources, such as
+ * "the", does not make a query scan them all. The scan reads at most half of
+ * the budget and stops at the deadline; if it stops early, the sources not
+ * read are never tried as last steps, the heaviest edge of the graph bounds
+ * the last edge instead, and the query is counted as truncated.
+ *
+ * <p>The heaviest edge of the graph is kept by the graph itself, up to date
+ * with every mutation, so no query scans the graph. Each thread searches in
+ * its own primitive buffers, including a table of the edges into the second
+ * word, which are kept between queries and grow to the largest frontier and
+ * number of sources read, so once they are warm a query allocates nothing per path
+ * it explores. Queries are safe for concurrent use provided the graph is not
+ * mutated.
+ */
+class HopSearch {
+
+    // checking the clock is comparatively slow, so it is checked only this often
+    private static final int CLOCK_INTERVAL = 64;
+
+    // thrown by the scan of the edges into the second word to stop it once
+    // its budget is spent; shared and without a stack trace, so it is cheap
+    private static final RuntimeException SCAN_STOPPED = new RuntimeException("source scan out of budget", null, false, false) {
+        private static final long serialVersionUID = 1L;
+    };
+
+    private final VersionedGraph graph;
+    private final int maxHops;
+    private final int maxExpansions;
+    private final int maxFrontier;
+    private final long timeBudgetNanos;
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+    private final LongAdder truncated = new LongAdder();
+
+    // Abstraction function:
+    //   represents the function (w1, w2) -> intermediate words of the
+    //   heaviest path of at most maxHops edges from w1 to w2 in graph, as far
+    //   as a search reading at most maxExpansions edges into w2 and partial
+    //   paths, keeping at most maxFrontier paths, for at most
+    //   timeBudgetNanos, can tell
+    // Representation invariant:
+    //   maxHops >= 2, maxExpansions >= 1, maxFrontier >= 1, timeBudgetNanos > 0
+    //   truncated counts the queries that ended before proving their path heaviest
+    // Safety from rep exposure:
+    //   all fields are private; buffers are confined to their threads and
+    //   results are fresh strings
+    // Thread safety argument:
+    //   every query uses only the buffers of its own thread, and truncated
+    //   is a concurrent counter
+
+    /**
+     * Make a search, first finding the heaviest edge of graph if the graph
+     * does not yet know it, in time proportional to the size of the graph.
+     *
+     * @param graph affinity graph
+     * @param maxHops maximum number of edges in a path, at least 2
+     * @param maxExpansions maximum number of edges into the second word read
+     *                      plus partial paths expanded by a query, at least 1
+     * @param timeBudgetNanos maximum time a query spends searching, positive
+     */
+    HopSearch(VersionedGraph graph, int maxHops, int maxExpansions, long timeBudgetNanos) {
+        if (maxHops < 2) throw new IllegalArgumentException("maxHops must be at least 2: " + maxHops);
+        if (maxExpansions < 1) throw new IllegalArgumentException("maxExpansions must be positive: " + maxExpansions);
+        if (timeBudgetNanos <= 0) throw new IllegalArgumentException("time budget must be positive: " + timeBudgetNanos);
+        this.graph = graph;
+        this.maxHops = maxHops;
+        this.maxExpansions = maxExpansions;
+        this.maxFrontier = (int) Math.min(Integer.MAX_VALUE - 8, 64L * maxExpansions);
+        this.timeBudgetNanos = timeBudgetNanos;
+        // outside any query's deadline
+        graph.maxWeight();
+    }
+
+    /**
+     * @param w1 lowercase first word
+     * @param w2 lowercase second word
+     * @return the intermediate words of the heaviest simple path found from
+     *         w1 to w2 with between 2 and maxHops edges, joined by single
+     *         spaces, or null if none was found; if the search ran out of
+     *         budget, it is counted as truncated and there may be a heavier
+     *         path, or a path where none was found
+     */
+    String bridge(String w1, String w2) {
+        return buffers.get().search(w1, w2, graph.maxWeight());
+    }
+
+    /**
+     * @return number of queries so far that ran out of their node, frontier
+     *         or time budget, including while reading the edges into the
+     *         second word, and so returned the heaviest path they found
+     *         rather than one proven heaviest
+     */
+    long truncated() {
+        return truncated.sum();
+    }
+
+    /**
+     * The frontier of one thread's searches: partial paths stored as a tree
+     * of states in parallel arrays, and a binary max-heap of the states not
+     * yet expanded, ordered by their bounds.
+     */
+    private class Buffers implements Graph.NeighborConsumer<String> {
+        private String[] label = new String[64];
+        private int[] parent = new int[64];
+        private int[] depth = new int[64];
+        private long[] weight = new long[64];
+        private long[] bound = new long[64];
+        private int[] heap = new int[64];
+        private int states;
+        private int heapSize;
+
+        // the edges into the second word: an open-addressing table of their
+        // sources and weights, and the slots in use, to clear after the query
+        private String[] sourceKeys = new String[16];
+        private int[] sourceWeights = new int[16];
+        private int[] sourceSlots = new int[8];
+        private int sourceCount;
+        private int sourceLimit;
+        private long deadline;
+        private final Graph.NeighborConsumer<String> addSource = this::addSource;
+
+        // the query and state being expanded, for accept()
+        private String target;
+        private int expanding;
+        private long best;
+        private long maxEdge;
+        private long maxIn;
+        private long dropped;
+
+        // Abstraction function:
+        //   state i < states is the path from the first word through
+        //     label[i], label[parent[i]], ... back to the root state 0, with
+        //     depth[i] edges and total weight weight[i], whose completions
+        //     weigh at most bound[i]
+        //   heap[0..heapSize) are the states not yet expanded
+        //   the edges into the second word read so far, all of them unless
+        //     the scan was stopped, are the edges from sourceKeys[i] of
+        //     weight sourceWeights[i] for the non-null slots i
+        //   dropped is the largest bound of a path left out of the frontier
+        //     for lack of room, or 0 if none was
+        // Representation invariant:
+        //   all state arrays have the same length >= states
+        //   parent[i] < i for every state i > 0
+        //   bound[heap[i]] <= bound[heap[(i - 1) / 2]] for 0 < i < heapSize
+        //   sourceKeys.length == sourceWeights.length, a power of two
+        //   sourceCount <= sourceLimit, and <= half of sourceKeys.length
+        //   sourceSlots[0..sourceCount) are exactly the non-null slots of sourceKeys
+
+        private String search(String w1, String w2, int maxEdge) {
+            this.deadline = System.nanoTime() + timeBudgetNanos;
+            this.sourceLimit = (maxExpansions + 1) / 2;
+            this.target = w2;
+            this.best = 0;
+            this.maxEdge = maxEdge;
+            this.maxIn = 0;
+            this.dropped = 0;
+            int bestState = -1;
+            states = 0;
+            heapSize = 0;
+            try {
+                boolean stopped = false;
+                try {
+                    graph.forEachSource(w2, addSource);
+                } catch (RuntimeException e) {
+                    if (e != SCAN_STOPPED) throw e;
+                    // sources not read may have edges as heavy as any
+                    stopped = true;
+                    maxIn = maxEdge;
+                }
+                if (sourceCount == 0) return null;
+                push(w1, -1, 0, 0);
+                // every source read was one node of the budget
+                for (int expansions = sourceCount; heapSize > 0 && expansions < maxExpansions; expansions++) {
+                    if (expansions % CLOCK_INTERVAL == CLOCK_INTERVAL - 1 && System.nanoTime() > deadline) break;
+                    int state = pop();
+                    if (bound[state] <= best) {
+                        // no path left in the frontier can beat best
+                        heapSize = 0;
+                        break;
+                    }
+                    if (depth[state] > 0) {
+                        int last = sourceWeight(label[state]);
+                        if (last > 0 && weight[state] + last > best) {
+                            best = weight[state] + last;
+                            bestState = state;
+                        }
+                    }
+                    if (depth[state] + 2 <= maxHops) {
+                        expanding = state;
+                        graph.forEachTarget(label[state], this);
+                    }
+                }
+                // any path left unexpanded or dropped might still beat best
+                if (stopped || (heapSize > 0 && bound[heap[0]] > best) || dropped > best) {
+                    truncated.increment();
+                    if (Metrics.ENABLED) Metrics.global().counter("poet.hops.truncated").increment();
+                }
+                return bestState < 0 ? null : path(bestState);
+            } finally {
+                // drop references to labels so that the buffers do not retain old graphs
+                Arrays.fill(label, 0, states, null);
+                for (int i = 0; i < sourceCount; i++) {
+                    sourceKeys[sourceSlots[i]] = null;
+                }
+                sourceCount = 0;
+                target = null;
+            }
+        }
+
+        // Adds an edge into the second word to the table, or stops the scan
+        // by throwing SCAN_STOPPED once it has read its share of the budget or
+        // passed the deadline.
+        private void addSource(String source, int edgeWeight) {
+            if (sourceCount == sourceLimit
+                    || (sourceCount % CLOCK_INTERVAL == CLOCK_INTERVAL - 1 && System.nanoTime() > deadline)) {
+                throw SCAN_STOPPED;
+            }
+            if (2 * (sourceCount + 1) > sourceKeys.length) {
+                String[] keys = sourceKeys;
+                int[] weights = sourceWeights;
+                int count = sourceCount;
+                int[] slots = sourceSlots;
+                sourceKeys = new String[2 * keys.length];
+                sourceWeights = new int[2 * keys.length];
+                sourceSlots = new int[keys.length];
+                sourceCount = 0;
+                for (int i = 0; i < count; i++) {
+                    putSource(keys[slots[i]], weights[slots[i]]);
+                }
+            }
+            putSource(source, edgeWeight);
+            maxIn = Math.max(maxIn, edgeWeight);
+        }
+
+        private void putSource(String source, int edgeWeight) {
+            int mask = sourceKeys.length - 1;
+            int slot = home(source, mask);
+            while (sourceKeys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            sourceKeys[slot] = source;
+            sourceWeights[slot] = edgeWeight;
+            sourceSlots[sourceCount++] = slot;
+        }
+
+        // Weight of the edge from word into the second word, or 0 if there is none.
+        private int sourceWeight(String word) {
+            int mask = sourceKeys.length - 1;
+            for (int slot = home(word, mask); sourceKeys[slot] != null; slot = (slot + 1) & mask) {
+                if (sourceKeys[slot].equals(word)) return sourceWeights[slot];
+            }
+            return 0;
+        }
+
+        private int home(String word, int mask) {
+            int h = word.hashCode() * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        // Extends the state being expanded by the edge to neighbor.
+        @Override
+        public void accept(String neighbor, int edgeWeight) {
+            if (neighbor.equals(target) || onPath(expanding, neighbor)) return;
+            int childDepth = depth[expanding] + 1;
+            long childWeight = weight[expanding] + edgeWeight;
+            if (childWeight + remaining(childDepth) > best) {
+                push(neighbor, expanding, childDepth, childWeight);
+            }
+        }
+
+        // Upper bound on the weight that completing a path of depth edges can add.
+        private long remaining(int depth) {
+            return (maxHops - 1 - depth) * maxEdge + maxIn;
+        }
+
+        private boolean onPath(int state, String word) {
+            for (int s = state; s >= 0; s = parent[s]) {
+                if (label[s].equals(word)) return true;
+            }
+            return false;
+        }
+
+        private String path(int state) {
+            StringBuilder words = new StringBuilder();
+            for (int s = state; parent[s] >= 0; s = parent[s]) {
+                words.insert(0, label[s]);
+                if (parent[parent[s]] >= 0) words.insert(0, ' ');
+            }
+            return words.toString();
+        }
+
+        private void push(String word, int from, int depthOf, long weightOf) {
+            if (states == maxFrontier) {
+                dropped = Math.max(dropped, weightOf + remaining(depthOf));
+                return;
+            }
+            if (states == label.length) {
+                int capacity = (int) Math.min(maxFrontier, 2L * label.length);
+                label = Arrays.copyOf(label, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+                bound = Arrays.copyOf(bound, capacity);
+                heap = Arrays.copyOf(heap, capacity);
+            }
+            int state = states++;
+            label[state] = word;
+            parent[state] = from;
+            depth[state] = depthOf;
+            weight[state] = weightOf;
+            bound[state] = weightOf + remaining(depthOf);
+            int i = heapSize++;
+            while (i > 0 && bound[heap[(i - 1) / 2]] < bound[state]) {
+                heap[i] = heap[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            heap[i] = state;
+        }
+
+        private int pop() {
+            int top = heap[0];
+            int last = heap[--heapSize];
+            int i = 0;
+            while (2 * i + 1 < heapSize) {
+                int child = 2 * i + 1;
+                if (child + 1 < heapSize && bound[heap[child + 1]] > bound[heap[child]]) child++;
+                if (bound[heap[child]] <= bound[last]) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+}
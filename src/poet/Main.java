@@ -5,6 +5,9 @@ package poet;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+
+import metrics.Metrics;
 
 /**
  * Example program using GraphPoet.
@@ -14,15 +17,44 @@ import java.io.IOException;
 public class Main {
     
     /**
-     * Generate example poetry.
+     * Generate example poetry, or with arguments
+     * {@code serve corpus [port [maxConnections [maxConcurrent [maxQueued]]]]},
+     * serve poems from the corpus with a {@link PoemServer} on the loopback
+     * interface until the process is stopped.
      * 
-     * @param args unused
+     * @param args empty, or the serve command and its arguments
      * @throws IOException if a poet corpus file cannot be found or read
      */
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
         final GraphPoet nimoy = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"));
         final String input = "Test the system.";
         System.out.println(input + "\n>>>\n" + nimoy.poem(input));
     }
-    
+
+    private static void serve(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: serve corpus [port [maxConnections [maxConcurrent [maxQueued]]]]");
+            System.exit(2);
+        }
+        GraphPoet poet = GraphPoet.parallel(Paths.get(args[1]));
+        poet.freeze();
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 7070;
+        int maxConnections = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+        int maxConcurrent = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        int maxQueued = args.length > 5 ? Integer.parseInt(args[5]) : 1000;
+        PoemServer server = new PoemServer(poet, port, maxConnections, maxConcurrent, maxQueued);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // exiting anyway
+            }
+            if (Metrics.ENABLED) System.err.print(Metrics.global());
+        }));
+        System.err.println("serving poems on port " + server.port());
+    }
 }
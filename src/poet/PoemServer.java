@@ -0,0 +1,289 @@
+package poet;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import metrics.Histogram;
+import metrics.Metrics;
+
+/**
+ * A line-protocol server that writes poems for its clients over TCP.
+ *
+ * <p>A client sends UTF-8 lines of input and receives one line per input, in
+ * order: {@code +} followed by the poem for the input, or {@code -busy} if
+ * the server is overloaded and rejected the input. Every connection is
+ * served by its own thread, and all connections share one poet. The thread
+ * is a virtual thread when the runtime has them; otherwise it comes from a
+ * fixed pool of {@value #PLATFORM_THREADS_PER_PROCESSOR} platform threads per
+ * processor, which then also caps the number of open connections, so that
+ * the server cannot exhaust the machine's threads.
+ *
+ * <p>Load is bounded at three levels. At most maxConnections connections are
+ * open at once; further clients wait in the TCP accept backlog. At most
+ * maxConcurrent poems are written at once; further inputs wait in a queue of
+ * at most maxQueued. An input that finds the queue full is rejected at once
+ * with {@code -busy}, so that overload shows up as fast rejections rather
+ * than unbounded latency. Each client has at most one input in flight, so a
+ * client that sends faster than it is served is slowed by TCP flow control.
+ *
+ * <p>{@link #shutdown(long, TimeUnit)} stops accepting connections, lets
+ * every input already received be answered, and then closes the connections.
+ *
+ * <p>When {@link Metrics#ENABLED metrics are enabled}, the latency of every
+ * request, including its time in the queue, is recorded in the histogram
+ * "server.request", and rejections are counted in "server.rejected".
+ */
+public class PoemServer implements Closeable {
+
+    /** Platform threads per processor serving connections, on runtimes without virtual threads. */
+    public static final int PLATFORM_THREADS_PER_PROCESSOR = 8;
+
+    private static final Histogram REQUEST = Metrics.global().histogram("server.request");
+
+    private final UnaryOperator<String> poems;
+    private final ServerSocket socket;
+    private final ExecutorService workers;
+    private final int maxConnections;
+    private final Semaphore connectionSlots;
+    private final Semaphore queueSlots;
+    private final Semaphore runningSlots;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+    private volatile boolean closing = false;
+
+    // Abstraction function:
+    //   represents a server listening on socket, answering each input line
+    //   of each connection in connections with poems.apply(line)
+    // Representation invariant:
+    //   connectionSlots has a permit for every connection that may still be
+    //     opened, of at most maxConnections, and connections holds every open
+    //     connection
+    //   workers has a thread for each of maxConnections connections
+    //   queueSlots has a permit for every input that may still be admitted;
+    //     runningSlots for every admitted input that may still start
+    //   once closing, socket is closed and no connection is added
+    // Safety from rep exposure:
+    //   all fields are private and never returned
+    // Thread safety argument:
+    //   the semaphores and connection set are thread-safe, and closing is
+    //   volatile; poems must be safe for concurrent use, which GraphPoet's
+    //   poem() is provided the graph is not mutated
+
+    /**
+     * Start a server on the loopback interface.
+     *
+     * @param poet poet to write the poems; it should not be mutated while the
+     *             server runs, and may be frozen with {@link GraphPoet#freeze()}
+     * @param port port to listen on, or 0 for any free port
+     * @param maxConnections maximum number of open connections, at least 1;
+     *                       without virtual threads, at most
+     *                       {@value #PLATFORM_THREADS_PER_PROCESSOR} per
+     *                       processor are opened whatever this is
+     * @param maxConcurrent maximum number of poems written at once, at least 1
+     * @param maxQueued maximum number of inputs waiting to be written, at least 0
+     * @throws IOException if the port cannot be bound
+     */
+    public PoemServer(GraphPoet poet, int port, int maxConnections, int maxConcurrent, int maxQueued) throws IOException {
+        this(input -> {
+            StringBuilder poem = new StringBuilder(input.length() * 2);
+            try {
+                // unlike poem(String), the streaming variant accepts all-whitespace input
+                poet.poem(new StringReader(input), poem);
+            } catch (IOException e) {
+                throw new AssertionError("string readers and builders cannot fail", e);
+            }
+            return poem.toString();
+        }, port, maxConnections, maxConcurrent, maxQueued);
+    }
+
+    // Start a server that answers each input with poems.apply(input).
+    PoemServer(UnaryOperator<String> poems, int port, int maxConnections, int maxConcurrent, int maxQueued) throws IOException {
+        if (maxConnections < 1 || maxConcurrent < 1 || maxQueued < 0) {
+            throw new IllegalArgumentException("limits must be positive, and the queue nonnegative");
+        }
+        this.poems = poems;
+        ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+        if (virtual != null) {
+            this.workers = virtual;
+            this.maxConnections = maxConnections;
+        } else {
+            // every connection holds its thread until it closes, so the pool
+            // is as large as the number of connections it may serve
+            int threads = Math.min(maxConnections, PLATFORM_THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+            this.workers = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "poem-server-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.maxConnections = threads;
+        }
+        this.connectionSlots = new Semaphore(this.maxConnections);
+        this.queueSlots = new Semaphore(maxConcurrent + maxQueued);
+        this.runningSlots = new Semaphore(maxConcurrent);
+        this.socket = new ServerSocket();
+        socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), Math.max(50, maxConnections));
+        // not a daemon, so that a running server keeps the JVM alive
+        this.acceptor = new Thread(this::acceptLoop, "poem-server-acceptor");
+        acceptor.start();
+    }
+
+    /*
+     * Make an executor that runs each task on a new virtual thread, or return
+     * null if the runtime has no virtual threads. Found reflectively, since
+     * this code is compiled for runtimes that do not.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** @return the most connections the server keeps open at once */
+    public int maxConnections() {
+        return maxConnections;
+    }
+
+    /** @return the port the server listens on */
+    public int port() {
+        return socket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        try {
+            while (!closing) {
+                connectionSlots.acquire();
+                Socket connection;
+                try {
+                    connection = socket.accept();
+                } catch (IOException e) {
+                    connectionSlots.release();
+                    if (closing) return;
+                    continue;
+                }
+                connections.add(connection);
+                if (closing) shutdownInput(connection);
+                workers.execute(() -> serve(connection));
+            }
+        } catch (InterruptedException e) {
+            // shutting down
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                out.write(answer(line));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away; nothing more to do for it
+        } finally {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                // already closed
+            }
+            connections.remove(connection);
+            connectionSlots.release();
+        }
+    }
+
+    private String answer(String input) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        if (!queueSlots.tryAcquire()) {
+            if (Metrics.ENABLED) Metrics.global().counter("server.rejected").increment();
+            return "-busy";
+        }
+        try {
+            runningSlots.acquireUninterruptibly();
+            try {
+                return "+" + poems.apply(input);
+            } finally {
+                runningSlots.release();
+            }
+        } finally {
+            queueSlots.release();
+            if (Metrics.ENABLED) REQUEST.recordSince(start);
+        }
+    }
+
+    private static void shutdownInput(Socket connection) {
+        try {
+            connection.shutdownInput();
+        } catch (IOException e) {
+            // already shut down or closed
+        }
+    }
+
+    /**
+     * Stop the server gracefully: stop accepting connections, answer every
+     * input already received, and close every connection. Connections still
+     * busy after the timeout are closed without their answers.
+     *
+     * @param timeout how long to wait for inputs to be answered
+     * @param unit unit of timeout
+     * @return true iff every input was answered before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        closing = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        acceptor.interrupt();
+        acceptor.join(unit.toMillis(timeout) + 1);
+        for (Socket connection : connections) {
+            shutdownInput(connection);
+        }
+        workers.shutdown();
+        boolean answered = workers.awaitTermination(timeout, unit);
+        if (!answered) {
+            for (Socket connection : connections) {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    // already closed
+                }
+            }
+            workers.shutdownNow();
+        }
+        return answered;
+    }
+
+    /**
+     * Stop the server gracefully, allowing up to 10 seconds for inputs
+     * already received to be answered.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            shutdown(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
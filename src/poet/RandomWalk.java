@@ -0,0 +1,186 @@
+package poet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Weighted random walks over one version of an affinity graph, choosing each
+ * next word with probability proportional to the weight of the edge to it.
+ *
+ * <p>Every word reached gets an alias table (Vose's method) over its outgoing
+ * edges, built the first time a walk leaves it and kept for the life of the
+ * walker, so each step after that takes constant time whatever the degree of
+ * the word. A step draws one 64-bit random number: its high half picks a
+ * column of the table and its low half decides between the column's word and
+ * its alias. Tables point directly at the nodes of the next words, so a warm
+ * walk makes no hash lookups and allocates nothing per step.
+ *
+ * <p>Memory grows to about 16 bytes per edge leaving the words walked from.
+ * A walker describes one version of the graph and must be replaced once the
+ * graph is mutated. Walks are safe for concurrent use, each with its own
+ * random generator, provided the graph is not mutated.
+ */
+class RandomWalk {
+
+    // a table with no columns, for words without outgoing edges
+    private static final Table DEAD_END = new Table(new Node[0], new int[0], new long[0]);
+
+    private final VersionedGraph graph;
+    private final long version;
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+
+    // Abstraction function:
+    //   represents the random walks over graph as it was at version, of
+    //   which the words in nodes have been reached, and those whose node has
+    //   a table have been walked from
+    // Representation invariant:
+    //   nodes.get(w).word.equals(w) for every key w
+    //   a node's table, once set, is table(word) for graph at version
+    // Safety from rep exposure:
+    //   all fields are private; only words are passed out
+    // Thread safety argument:
+    //   nodes is concurrent; tables are immutable and published through a
+    //   volatile field, and two threads building the same table build equal
+    //   ones, so either may win
+
+    /**
+     * @param graph affinity graph, not to be mutated while this walker is in use
+     */
+    RandomWalk(VersionedGraph graph) {
+        this.graph = graph;
+        this.version = graph.version();
+    }
+
+    /** @return the version of the graph this walker describes */
+    long version() {
+        return version;
+    }
+
+    /**
+     * Walk the graph, writing each word reached after a single space.
+     *
+     * @param start lowercase word at which to start; need not be in the graph
+     * @param length maximum number of words to write, including start, at least 1
+     * @param random source of randomness for the walk
+     * @param output where to write the words; the walk stops early at a word
+     *               with no outgoing edges
+     * @throws IOException if output cannot be written
+     */
+    void walk(String start, int length, SplittableRandom random, Appendable output) throws IOException {
+        output.append(start);
+        Node node = node(start);
+        for (int i = 1; i < length; i++) {
+            Table table = node.table;
+            if (table == null) {
+                table = build(node.word);
+                node.table = table;
+            }
+            int columns = table.next.length;
+            if (columns == 0) return;
+            long bits = random.nextLong();
+            int column = (int) (((bits >>> 32) * columns) >>> 32);
+            if ((bits & 0xFFFFFFFFL) >= table.threshold[column]) {
+                column = table.alias[column];
+            }
+            node = table.next[column];
+            output.append(' ').append(node.word);
+        }
+    }
+
+    private Node node(String word) {
+        Node node = nodes.get(word);
+        return node != null ? node : nodes.computeIfAbsent(word, Node::new);
+    }
+
+    /*
+     * Build the alias table of the edges out of word by Vose's method, in
+     * exact integer arithmetic: with n edges of total weight W, edge i starts
+     * with mass weight(i) * n, and each column holds W of mass, split between
+     * its own edge and at most one alias.
+     */
+    private Table build(String word) {
+        List<String> targets = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        graph.forEachTarget(word, (target, weight) -> {
+            targets.add(target);
+            weights.add(weight);
+        });
+        int n = targets.size();
+        if (n == 0) return DEAD_END;
+
+        long total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        long[] mass = new long[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smalls = 0;
+        int larges = 0;
+        for (int i = 0; i < n; i++) {
+            mass[i] = (long) weights.get(i) * n;
+            if (mass[i] < total) small[smalls++] = i;
+            else large[larges++] = i;
+        }
+        int[] alias = new int[n];
+        long[] kept = new long[n];
+        while (smalls > 0 && larges > 0) {
+            int less = small[--smalls];
+            int more = large[--larges];
+            kept[less] = mass[less];
+            alias[less] = more;
+            mass[more] -= total - mass[less];
+            if (mass[more] < total) small[smalls++] = more;
+            else large[larges++] = more;
+        }
+        while (larges > 0) {
+            kept[large[--larges]] = total;
+        }
+        while (smalls > 0) {
+            // unreachable, since the mass left always averages total, but kept
+            // so that every column is filled
+            kept[small[--smalls]] = total;
+        }
+
+        Node[] next = new Node[n];
+        long[] threshold = new long[n];
+        for (int i = 0; i < n; i++) {
+            next[i] = node(targets.get(i));
+            threshold[i] = kept[i] == total ? 1L << 32 : (long) ((double) kept[i] / total * (1L << 32));
+        }
+        return new Table(next, alias, threshold);
+    }
+
+    /**
+     * A word reached by some walk, with the alias table of its outgoing
+     * edges once a walk has left it.
+     */
+    private static final class Node {
+        private final String word;
+        private volatile Table table = null;
+
+        private Node(String word) {
+            this.word = word;
+        }
+    }
+
+    /**
+     * An alias table: column i leads to next[i] when the low 32 random bits
+     * are below threshold[i], and to next[alias[i]] otherwise.
+     */
+    private static final class Table {
+        private final Node[] next;
+        private final int[] alias;
+        private final long[] threshold;
+
+        private Table(Node[] next, int[] alias, long[] threshold) {
+            this.next = next;
+            this.alias = alias;
+            this.threshold = threshold;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package poet;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A reader that forwards to another reader and adds up the time spent in
+ * its reads, to separate the cost of I/O from the cost of consuming it.
+ * Not safe for concurrent use.
+ */
+class TimedReader extends FilterReader {
+
+    private long nanos = 0;
+
+    // Abstraction function:
+    //   represents the stream in, having spent nanos nanoseconds reading
+    // Representation invariant:
+    //   nanos >= 0
+    // Safety from rep exposure:
+    //   the only field is a private primitive
+
+    /**
+     * @param in reader to forward to; closing this reader closes it
+     */
+    TimedReader(Reader in) {
+        super(in);
+    }
+
+    /** @return nanoseconds spent in read() so far */
+    long nanos() {
+        return nanos;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.read();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.read(buffer, offset, length);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package poet;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import graph.FrozenGraph;
+import graph.Graph;
+import graph.MeteredGraph;
+
+/**
+ * A graph that forwards to another graph and counts its mutations, so that
+ * anything derived from the graph can tell whether it is stale.
+ */
+class VersionedGraph implements Graph<String> {
+
+    private volatile Graph<String> graph;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicInteger maxWeight = new AtomicInteger(-1);
+
+    // Abstraction function:
+    //   represents graph, at revision version
+    // Representation invariant:
+    //   version is incremented by every add, set, increment and remove that changes graph
+    //   graph is only ever replaced by a frozen copy of itself, which leaves
+    //   the version unchanged
+    //   maxWeight is -1 if not yet known, and otherwise at least the weight
+    //     of every edge of graph
+    // Safety from rep exposure:
+    //   all fields are private; queries return whatever graph returns
+
+    /**
+     * @param graph graph to forward to, which must not be mutated except through this
+     */
+    VersionedGraph(Graph<String> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Replace the underlying graph with an immutable snapshot of it. The
+     * version is unchanged, and every later mutation throws
+     * UnsupportedOperationException.
+     */
+    void freezeInPlace() {
+        graph = graph.freeze();
+    }
+
+    /**
+     * @return the underlying graph if it is frozen, unwrapped from any
+     *         metering so that its specialized queries are available, or
+     *         null if it is not frozen
+     */
+    FrozenGraph<String> frozen() {
+        Graph<String> graph = this.graph;
+        if (graph instanceof MeteredGraph) graph = ((MeteredGraph<String>) graph).delegate();
+        return graph instanceof FrozenGraph ? (FrozenGraph<String>) graph : null;
+    }
+
+    /**
+     * Find an upper bound on the weights of the edges of the graph. The first
+     * call scans the graph, in time proportional to its size; after that the
+     * bound is raised by each mutation that sets a heavier weight, so later
+     * calls take constant time. The bound is not lowered when heavy edges
+     * are removed or lightened, so it may exceed the heaviest current edge.
+     *
+     * @return at least the weight of every edge of the graph, nonnegative
+     */
+    int maxWeight() {
+        int max = maxWeight.get();
+        if (max < 0) {
+            int[] scan = { 0 };
+            for (String vertex : graph.vertices()) {
+                graph.forEachTarget(vertex, (target, weight) -> scan[0] = Math.max(scan[0], weight));
+            }
+            maxWeight.compareAndSet(-1, scan[0]);
+            max = maxWeight.get();
+        }
+        return max;
+    }
+
+    // Raise the known bound on edge weights to cover weight, if it is known.
+    private void raiseMaxWeight(int weight) {
+        int max = maxWeight.get();
+        while (max >= 0 && weight > max && !maxWeight.compareAndSet(max, weight)) {
+            max = maxWeight.get();
+        }
+    }
+
+    /** @return a number that changes whenever the graph is mutated */
+    long version() {
+        return version.get();
+    }
+
+    @Override
+    public boolean add(String vertex) {
+        boolean added = graph.add(vertex);
+        if (added) version.incrementAndGet();
+        return added;
+    }
+
+    @Override
+    public int set(String source, String target, int weight) {
+        int previous = graph.set(source, target, weight);
+        raiseMaxWeight(weight);
+        version.incrementAndGet();
+        return previous;
+    }
+
+    @Override
+    public int increment(String source, String target, int delta) {
+        int previous = graph.increment(source, target, delta);
+        raiseMaxWeight(previous + delta);
+        version.incrementAndGet();
+        return previous;
+    }
+
+    @Override
+    public boolean remove(String vertex) {
+        boolean removed = graph.remove(vertex);
+        if (removed) version.incrementAndGet();
+        return removed;
+    }
+
+    @Override
+    public Set<String> vertices() {
+        return graph.vertices();
+    }
+
+    @Override
+    public Map<String, Integer> sources(String target) {
+        return graph.sources(target);
+    }
+
+    @Override
+    public Map<String, Integer> targets(String source) {
+        return graph.targets(source);
+    }
+
+    @Override
+    public void forEachSource(String target, NeighborConsumer<? super String> action) {
+        graph.forEachSource(target, action);
+    }
+
+    @Override
+    public void forEachTarget(String source, NeighborConsumer<? super String> action) {
+        graph.forEachTarget(source, action);
+    }
+
+    @Override
+    public Map<String, Integer> topTargets(String source, int k) {
+        return graph.topTargets(source, k);
+    }
+
+    @Override
+    public Map<String, Integer> topSources(String target, int k) {
+        return graph.topSources(target, k);
+    }
+
+    @Override
+    public String toString() {
+        return graph.toString();
+    }
+}
@@ -0,0 +1,158 @@
+package poet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Splits a character stream into whitespace-separated words, one bounded
+ * buffer at a time, so that memory use depends on the length of the longest
+ * word rather than on the length of the stream.
+ *
+ * <p>Whitespace is exactly the set matched by the regex {@code \s}: space,
+ * tab, newline, vertical tab, form feed and carriage return.
+ */
+class WordReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private char[] word = new char[64];
+    private int length = 0;
+    private int position = 0;
+    private int limit = 0;
+
+    // Abstraction function:
+    //   represents the words of the stream remaining after the characters
+    //   already consumed from in, followed by buffer[position..limit)
+    // Representation invariant:
+    //   0 <= position <= limit <= buffer.length
+    //   0 <= length <= word.length
+    // Safety from rep exposure:
+    //   all fields are private; words are returned as strings
+
+    /**
+     * Make a word reader over a character stream.
+     *
+     * @param in stream to read words from; the caller remains responsible for closing it
+     */
+    WordReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * @param c a character
+     * @return true iff c is matched by the regex {@code \s}
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * @return true iff the next unread character of the stream is whitespace;
+     *         false at the end of the stream
+     * @throws IOException if the underlying stream cannot be read
+     */
+    boolean atWhitespace() throws IOException {
+        if (position == limit && !fill()) {
+            return false;
+        }
+        return isWhitespace(buffer[position]);
+    }
+
+    /**
+     * Read the next word.
+     *
+     * @return the next maximal run of non-whitespace characters, or null at
+     *         the end of the stream
+     * @throws IOException if the underlying stream cannot be read
+     */
+    String next() throws IOException {
+        return advance() ? new String(word, 0, length) : null;
+    }
+
+    /**
+     * Read the next word and fold its case through a word table, which
+     * allocates nothing for a word already in the table.
+     *
+     * @param table table of the words read so far
+     * @return the canonical lowercase form of the next maximal run of
+     *         non-whitespace characters, equal to next().toLowerCase(), or
+     *         null at the end of the stream
+     * @throws IOException if the underlying stream cannot be read
+     */
+    String nextFolded(WordTable table) throws IOException {
+        return advance() ? table.fold(word, 0, length) : null;
+    }
+
+    // Copies the next word into word[0..length), or returns false at the end
+    // of the stream.
+    private boolean advance() throws IOException {
+        length = 0;
+        while (true) {
+            if (position == limit && !fill()) {
+                return length > 0;
+            }
+            if (length == 0) {
+                while (position < limit && isWhitespace(buffer[position])) position++;
+            }
+            int start = position;
+            while (position < limit && !isWhitespace(buffer[position])) position++;
+            int n = position - start;
+            if (length + n > word.length) {
+                word = Arrays.copyOf(word, Math.max(word.length * 2, length + n));
+            }
+            System.arraycopy(buffer, start, word, length, n);
+            length += n;
+            if (position < limit && length > 0) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Split a string into words exactly as {@code input.split("\\s+")} does:
+     * leading whitespace yields an empty first word, trailing whitespace
+     * yields nothing, an empty string yields one empty word, and a string of
+     * only whitespace yields no words.
+     *
+     * @param input string to split
+     * @return the words of input
+     */
+    static String[] split(String input) {
+        int count = 0;
+        boolean inWord = false;
+        for (int i = 0; i < input.length(); i++) {
+            boolean space = isWhitespace(input.charAt(i));
+            if (!space && !inWord) count++;
+            inWord = !space;
+        }
+        boolean leading = !input.isEmpty() && isWhitespace(input.charAt(0));
+        if (input.isEmpty() || (leading && count > 0)) count++;
+        String[] words = new String[count];
+        int next = 0;
+        if (leading && count > 0) words[next++] = "";
+        for (int i = 0; i < input.length(); ) {
+            while (i < input.length() && isWhitespace(input.charAt(i))) i++;
+            int start = i;
+            while (i < input.length() && !isWhitespace(input.charAt(i))) i++;
+            if (i > start) words[next++] = input.substring(start, i);
+        }
+        if (input.isEmpty()) words[0] = "";
+        return words;
+    }
+
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+}
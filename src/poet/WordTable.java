@@ -0,0 +1,118 @@
+package poet;
+
+/**
+ * A table of lowercase words that folds the case of words found in character
+ * arrays and returns one canonical string per distinct word.
+ *
+ * <p>A word of ASCII characters is folded and hashed in a single pass over
+ * the array and compared in place with the words already in the table, so
+ * looking up a word seen before allocates nothing. Other words, and all
+ * words under a default locale that folds ASCII differently (such as
+ * Turkish), go through {@link String#toLowerCase()}, so the result is always
+ * exactly the {@code toLowerCase()} of the word.
+ *
+ * <p>Not safe for concurrent use.
+ */
+class WordTable {
+
+    private final boolean asciiFolds = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase().equals("abcdefghijklmnopqrstuvwxyz");
+    private String[] words = new String[64];
+    private int size = 0;
+
+    // Abstraction function:
+    //   represents the set of the non-null strings in words
+    // Representation invariant:
+    //   words.length is a power of two and size <= words.length / 2
+    //   size is the number of non-null slots
+    //   each word w is reachable by linear probing from the home slot of
+    //     w.hashCode() without crossing a null slot, and occurs only once
+    //   every word equals its own toLowerCase()
+    // Safety from rep exposure:
+    //   all fields are private; only immutable strings are returned
+
+    private static int home(int hash, int mask) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** @return number of distinct words in the table */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param chars characters of a word
+     * @param from index of the first character of the word
+     * @param to index after the last character of the word
+     * @return the canonical string equal to new String(chars, from, to - from).toLowerCase()
+     */
+    String fold(char[] chars, int from, int to) {
+        int hash = 0;
+        boolean ascii = asciiFolds;
+        for (int i = from; i < to && ascii; i++) {
+            char c = chars[i];
+            ascii = c < 0x80;
+            hash = 31 * hash + lower(c);
+        }
+        if (!ascii) {
+            return intern(new String(chars, from, to - from).toLowerCase());
+        }
+        int mask = words.length - 1;
+        for (int slot = home(hash, mask); ; slot = (slot + 1) & mask) {
+            String word = words[slot];
+            if (word == null) {
+                return insert(slot, new String(chars, from, to - from).toLowerCase());
+            }
+            if (word.hashCode() == hash && foldedEquals(word, chars, from, to)) {
+                return word;
+            }
+        }
+    }
+
+    /**
+     * @param word a lowercase word
+     * @return the canonical string equal to word
+     */
+    String intern(String word) {
+        int mask = words.length - 1;
+        for (int slot = home(word.hashCode(), mask); ; slot = (slot + 1) & mask) {
+            String existing = words[slot];
+            if (existing == null) return insert(slot, word);
+            if (existing.equals(word)) return existing;
+        }
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean foldedEquals(String word, char[] chars, int from, int to) {
+        if (word.length() != to - from) return false;
+        for (int i = from; i < to; i++) {
+            if (word.charAt(i - from) != lower(chars[i])) return false;
+        }
+        return true;
+    }
+
+    private String insert(int slot, String word) {
+        words[slot] = word;
+        size++;
+        if (size > words.length / 2) {
+            String[] old = words;
+            words = new String[old.length * 2];
+            int mask = words.length - 1;
+            for (String w : old) {
+                if (w == null) continue;
+                int s = home(w.hashCode(), mask);
+                while (words[s] != null) s = (s + 1) & mask;
+                words[s] = w;
+            }
+        }
+        checkRep();
+        return word;
+    }
+
+    private void checkRep() {
+        assert Integer.bitCount(words.length) == 1 && size <= words.length / 2;
+    }
+}
@@ -0,0 +1,24 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CompactGraphTest extends GraphInstanceTest {
+
+    @Override public Graph<String> emptyInstance() {
+        return new CompactGraph<>();
+    }
+
+    @Override protected void maintain(Graph<String> graph) {
+        ((CompactGraph<String>) graph).validate();
+    }
+
+    @Test
+    public void testAddDuplicateVertex() {
+        Graph<String> graph = emptyInstance();
+        assertTrue("First add of 'A' should succeed.", graph.add("A"));
+        assertFalse("Graph should not allow duplicate vertex 'A'.", graph.add("A"));
+    }
+
+}
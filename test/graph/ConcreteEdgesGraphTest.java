@@ -10,7 +10,7 @@ import org.junit.Test;
 public class ConcreteEdgesGraphTest extends GraphInstanceTest {
 
     @Override public Graph<String> emptyInstance() {
-        return new ConcreteEdgesGraph();
+        return new ConcreteEdgesGraph<>();
     }
     @Test
     public void testAddVertex() {
@@ -5,12 +5,18 @@ package graph;
 
 import static org.junit.Assert.*;
 
+import java.util.Collections;
+
 import org.junit.Test;
 
 public class ConcreteVerticesGraphTest extends GraphInstanceTest {
     
     @Override public Graph<String> emptyInstance() {
-        return new ConcreteVerticesGraph();
+        return new ConcreteVerticesGraph<>();
+    }
+
+    @Override protected void maintain(Graph<String> graph) {
+        ((ConcreteVerticesGraph<String>) graph).validate();
     }
     
     @Test
@@ -49,5 +55,23 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
         assertTrue("Graph should have 'B' as a target for 'A'.", graph.targets("A").containsKey("B"));
         assertEquals("Edge weight from A to B should be 5.", 5, (int) graph.targets("A").get("B"));
     }
+
+    @Test(timeout = 10000)
+    public void testPruningManyVerticesIsLocal() {
+        Graph<String> graph = emptyInstance();
+        int words = 100000;
+        for (int i = 0; i < words; i++) {
+            graph.set("hub", "w" + i, 1);
+            graph.set("w" + i, "w" + ((i + 1) % words), 2);
+        }
+        // a sweep over every vertex per removal would take 10^10 steps
+        for (int i = 0; i < words; i += 2) {
+            assertTrue(graph.remove("w" + i));
+        }
+        assertEquals(words / 2 + 1, graph.vertices().size());
+        assertEquals(words / 2, graph.targets("hub").size());
+        assertEquals(Collections.singletonMap("hub", 1), graph.sources("w1"));
+        assertTrue(graph.targets("w1").isEmpty());
+    }
     
 }
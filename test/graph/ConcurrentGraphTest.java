@@ -0,0 +1,99 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ConcurrentGraphTest extends GraphInstanceTest {
+
+    @Override public Graph<String> emptyInstance() {
+        return new ConcurrentGraph<>();
+    }
+
+    private static void runConcurrently(int threads, Worker worker) throws InterruptedException {
+        List<Thread> running = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    worker.run(id);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            running.add(thread);
+            thread.start();
+        }
+        for (Thread thread : running) thread.join();
+        assertEquals(Collections.emptyList(), failures);
+    }
+
+    private interface Worker {
+        void run(int id) throws Exception;
+    }
+
+    @Test
+    public void testIncrementReturnsPreviousWeight() {
+        Graph<String> graph = emptyInstance();
+        assertEquals(0, graph.increment("A", "B", 3));
+        assertEquals(3, graph.increment("A", "B", 2));
+        assertEquals(5, graph.increment("A", "B", -5));
+        assertEquals(Collections.emptyMap(), graph.targets("A"));
+    }
+
+    @Test
+    public void testConcurrentIncrementsAreNotLost() throws InterruptedException {
+        Graph<String> graph = emptyInstance();
+        runConcurrently(8, id -> {
+            for (int i = 0; i < 5000; i++) {
+                graph.increment("w" + (i % 10), "w" + (i % 7), 1);
+            }
+        });
+        int total = 0;
+        for (String vertex : graph.vertices()) {
+            for (int weight : graph.targets(vertex).values()) total += weight;
+        }
+        assertEquals(8 * 5000, total);
+    }
+
+    @Test
+    public void testConcurrentMutationsKeepForwardAndReverseConsistent() throws InterruptedException {
+        Graph<String> graph = emptyInstance();
+        runConcurrently(8, id -> {
+            Random random = new Random(id);
+            for (int i = 0; i < 5000; i++) {
+                String source = "v" + random.nextInt(30);
+                String target = "v" + random.nextInt(30);
+                int operation = random.nextInt(20);
+                if (operation == 0) {
+                    graph.remove(source);
+                } else if (operation < 4) {
+                    graph.set(source, target, 0);
+                } else if (operation < 12) {
+                    graph.increment(source, target, 1);
+                } else {
+                    graph.set(source, target, 1 + random.nextInt(9));
+                }
+                graph.targets(target);
+            }
+        });
+        for (String source : graph.vertices()) {
+            for (Map.Entry<String, Integer> edge : graph.targets(source).entrySet()) {
+                assertTrue(graph.vertices().contains(edge.getKey()));
+                assertEquals(edge.getValue(), graph.sources(edge.getKey()).get(source));
+            }
+            for (String target : graph.sources(source).keySet()) {
+                assertTrue(graph.targets(target).containsKey(source));
+            }
+        }
+        ((ConcurrentGraph<String>) graph).validate();
+    }
+
+}
@@ -0,0 +1,46 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class DenseIntGraphTest {
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; 
+    }
+
+    @Test
+    public void testEdgesAndGrowth() {
+        DenseIntGraph graph = new DenseIntGraph(4);
+        assertTrue(graph.add(2));
+        assertFalse(graph.add(2));
+        assertEquals(0, graph.set(2, 1000, 5));
+        assertEquals(5, graph.increment(2, 1000, 3));
+        assertEquals(new HashSet<>(Arrays.asList(2, 1000)), graph.vertices());
+        assertEquals(Collections.singletonMap(1000, 8), graph.targets(2));
+        assertEquals(Collections.singletonMap(2, 8), graph.sources(1000));
+        assertTrue(graph.targets(7).isEmpty());
+        assertFalse(graph.remove(7));
+        assertFalse(graph.remove(5000));
+        assertTrue(graph.remove(1000));
+        assertEquals(Collections.singleton(2), graph.vertices());
+        assertTrue(graph.targets(2).isEmpty());
+        graph.validate();
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeLabelRejected() {
+        new DenseIntGraph().set(1, -1, 1);
+    }
+
+    @Test
+    public void testRandomChurnMatchesIndexedGraph() {
+        GraphInstanceTest.checkRandomChurn(new DenseIntGraph(), id -> id, DenseIntGraph::validate);
+    }
+}
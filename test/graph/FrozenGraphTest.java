@@ -0,0 +1,155 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FrozenGraphTest {
+
+    private static Graph<String> randomGraph(long seed) {
+        Graph<String> graph = new IndexedGraph<>();
+        Random random = new Random(seed);
+        for (int i = 0; i < 2000; i++) {
+            graph.set("v" + random.nextInt(80), "v" + random.nextInt(80), 1 + random.nextInt(20));
+        }
+        graph.add("isolated");
+        return graph;
+    }
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; 
+    }
+
+    @Test
+    public void testSnapshotMatchesOriginal() {
+        Graph<String> graph = randomGraph(6005);
+        Graph<String> frozen = graph.freeze();
+        assertEquals(graph.vertices(), frozen.vertices());
+        for (String vertex : graph.vertices()) {
+            assertEquals(graph.targets(vertex), frozen.targets(vertex));
+            assertEquals(graph.sources(vertex), frozen.sources(vertex));
+            Map<String, Integer> targets = new HashMap<>();
+            frozen.forEachTarget(vertex, targets::put);
+            assertEquals(graph.targets(vertex), targets);
+            Map<String, Integer> sources = new HashMap<>();
+            frozen.forEachSource(vertex, sources::put);
+            assertEquals(graph.sources(vertex), sources);
+        }
+        assertEquals(Collections.emptyMap(), frozen.targets("missing"));
+    }
+
+    @Test
+    public void testTargetsIteratedInOriginalOrder() {
+        Graph<String> graph = randomGraph(42);
+        Graph<String> frozen = graph.freeze();
+        for (String vertex : graph.vertices()) {
+            assertEquals(new ArrayList<>(graph.targets(vertex).keySet()),
+                    new ArrayList<>(frozen.targets(vertex).keySet()));
+            List<String> visited = new ArrayList<>();
+            frozen.forEachTarget(vertex, (target, weight) -> visited.add(target));
+            assertEquals(new ArrayList<>(graph.targets(vertex).keySet()), visited);
+        }
+    }
+
+    @Test
+    public void testTopNeighborsMatchSortedQueries() {
+        Graph<String> graph = randomGraph(7);
+        Graph<String> frozen = graph.freeze();
+        for (String vertex : graph.vertices()) {
+            for (int k : new int[] { 0, 1, 5, 1000 }) {
+                assertEquals(new ArrayList<>(graph.topTargets(vertex, k).entrySet()),
+                        new ArrayList<>(frozen.topTargets(vertex, k).entrySet()));
+                List<Map.Entry<String, Integer>> sources = new ArrayList<>(frozen.sources(vertex).entrySet());
+                sources.sort((a, b) -> b.getValue() - a.getValue());
+                assertEquals(sources.subList(0, Math.min(k, sources.size())),
+                        new ArrayList<>(frozen.topSources(vertex, k).entrySet()));
+            }
+        }
+    }
+
+    @Test
+    public void testHeaviestTwoHopMatchesExhaustiveSearch() {
+        Graph<String> graph = new IndexedGraph<>();
+        Random random = new Random(17);
+        for (int i = 0; i < 6000; i++) {
+            // few distinct weights, so that many paths tie
+            graph.set("v" + random.nextInt(60), "v" + random.nextInt(60), 1 + random.nextInt(3));
+        }
+        graph.add("isolated");
+        FrozenGraph<String> frozen = FrozenGraph.of(graph);
+        for (String source : graph.vertices()) {
+            for (String target : graph.vertices()) {
+                String expected = null;
+                int best = 0;
+                Map<String, Integer> sources = graph.sources(target);
+                for (Map.Entry<String, Integer> edge : graph.targets(source).entrySet()) {
+                    Integer second = sources.get(edge.getKey());
+                    if (second != null && edge.getValue() + second > best) {
+                        best = edge.getValue() + second;
+                        expected = edge.getKey();
+                    }
+                }
+                assertEquals(source + " -> " + target, expected, frozen.heaviestTwoHop(source, target));
+            }
+        }
+        assertNull(frozen.heaviestTwoHop("missing", "v1"));
+    }
+
+    @Test
+    public void testSnapshotUnaffectedByLaterMutation() {
+        Graph<String> graph = new IndexedGraph<>();
+        graph.set("A", "B", 2);
+        Graph<String> frozen = graph.freeze();
+        graph.set("A", "B", 5);
+        graph.remove("B");
+        assertEquals(Collections.singletonMap("B", 2), frozen.targets("A"));
+        assertSame("freezing a frozen graph should return it", frozen, frozen.freeze());
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSetFailsFast() {
+        Graph<String> graph = new IndexedGraph<>();
+        graph.set("A", "B", 2);
+        graph.freeze().set("A", "B", 3);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testViewsUnmodifiable() {
+        Graph<String> graph = new IndexedGraph<>();
+        graph.set("A", "B", 2);
+        graph.freeze().targets("A").put("C", 1);
+    }
+
+    @Test
+    public void testConcurrentReaders() throws InterruptedException {
+        Graph<String> graph = randomGraph(7);
+        Graph<String> frozen = graph.freeze();
+        List<Thread> readers = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < 8; t++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    for (int round = 0; round < 20; round++) {
+                        for (String vertex : frozen.vertices()) {
+                            assertEquals(graph.targets(vertex), frozen.targets(vertex));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        for (Thread reader : readers) reader.join();
+        assertEquals(Collections.emptyList(), failures);
+    }
+}
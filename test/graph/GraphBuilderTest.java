@@ -0,0 +1,100 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GraphBuilderTest extends GraphInstanceTest {
+
+    @Override public Graph<String> emptyInstance() {
+        return Graph.<String>builder().build();
+    }
+
+    @Test
+    public void testBuilderSumsRepeatedEdges() {
+        Graph<String> graph = Graph.<String>builder(3, 2)
+                .add("a", "b", 1)
+                .add("a", "b", 2)
+                .add("b", "c", 4)
+                .add("a", "b", 3)
+                .build();
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), graph.vertices());
+        assertEquals(Collections.singletonMap("b", 6), graph.targets("a"));
+        assertEquals(Collections.singletonMap("a", 6), graph.sources("b"));
+        assertEquals(Collections.singletonMap("c", 4), graph.targets("b"));
+    }
+
+    @Test
+    public void testBuilderZeroWeightAddsOnlyVertices() {
+        Graph<String> graph = Graph.<String>builder().add("a", "b", 0).add("c").build();
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), graph.vertices());
+        assertTrue(graph.targets("a").isEmpty());
+        assertTrue(graph.sources("b").isEmpty());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBuilderRejectsNegativeWeight() {
+        Graph.<String>builder().add("a", "b", -1);
+    }
+
+    @Test(expected=ArithmeticException.class)
+    public void testBuilderRejectsOverflow() {
+        Graph.<String>builder().add("a", "b", Integer.MAX_VALUE).add("a", "b", 1);
+    }
+
+    @Test
+    public void testBuilderBuildsOnce() {
+        GraphBuilder<String> builder = Graph.builder();
+        builder.add("a", "b", 1).build();
+        try {
+            builder.build();
+            fail("expected a second build to fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            builder.add("c");
+            fail("expected adding after build to fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBuilderMatchesIncrementalConstruction() {
+        Random random = new Random(21);
+        Graph<String> expected = new IndexedGraph<>();
+        // estimates well below the real size, so the builder has to grow
+        GraphBuilder<String> builder = Graph.builder(10, 10);
+        Map<String, Map<String, Integer>> rows = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            String source = "v" + random.nextInt(300);
+            String target = "v" + random.nextInt(300);
+            int weight = random.nextInt(5);
+            expected.increment(source, target, weight);
+            if (i % 2 == 0) {
+                builder.add(source, target, weight);
+            } else {
+                rows.computeIfAbsent(source, s -> new HashMap<>()).merge(target, weight, Integer::sum);
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            expected.add("lonely" + i);
+            builder.add("lonely" + i);
+        }
+        Graph<String> graph = builder.addAll(rows).build();
+        ((IndexedGraph<String>) graph).validate();
+        assertEquals(expected.vertices(), graph.vertices());
+        for (String vertex : expected.vertices()) {
+            assertEquals(expected.targets(vertex), graph.targets(vertex));
+            assertEquals(expected.sources(vertex), graph.sources(vertex));
+        }
+    }
+}
@@ -5,7 +5,15 @@ package graph;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 import org.junit.Test;
 
@@ -14,6 +22,52 @@ public abstract class GraphInstanceTest {
     
 
     public abstract Graph<String> emptyInstance();
+
+    /**
+     * Run backend-specific upkeep on a graph under test, such as compacting
+     * or validating it. Called after every 5000 operations of the random
+     * churn test, including the last.
+     *
+     * @param graph a graph made by emptyInstance()
+     */
+    protected void maintain(Graph<String> graph) {
+    }
+
+    /**
+     * Apply a seeded random mix of removes, sets and increments to graph and
+     * to an IndexedGraph, asserting that each returns the same result, and
+     * that they end with the same vertices and edges.
+     *
+     * @param graph empty graph under test
+     * @param label label of the vertex with each ID in [0, 60)
+     * @param maintain called after every 5000 operations, including the last
+     */
+    static <L, G extends Graph<L>> void checkRandomChurn(G graph, IntFunction<L> label, Consumer<? super G> maintain) {
+        Graph<L> expected = new IndexedGraph<>();
+        Random random = new Random(6005);
+        for (int i = 1; i <= 20000; i++) {
+            L source = label.apply(random.nextInt(60));
+            L target = label.apply(random.nextInt(60));
+            int operation = random.nextInt(20);
+            if (operation == 0) {
+                assertEquals(expected.remove(source), graph.remove(source));
+            } else if (operation < 5) {
+                assertEquals(expected.set(source, target, 0), graph.set(source, target, 0));
+            } else if (operation < 10) {
+                int weight = 1 + random.nextInt(1000);
+                assertEquals(expected.set(source, target, weight), graph.set(source, target, weight));
+            } else {
+                int delta = 1 + random.nextInt(10);
+                assertEquals(expected.increment(source, target, delta), graph.increment(source, target, delta));
+            }
+            if (i % 5000 == 0) maintain.accept(graph);
+        }
+        assertEquals(expected.vertices(), graph.vertices());
+        for (L vertex : expected.vertices()) {
+            assertEquals(expected.targets(vertex), graph.targets(vertex));
+            assertEquals(expected.sources(vertex), graph.sources(vertex));
+        }
+    }
     
     @Test(expected=AssertionError.class)
     public void testAssertionsEnabled() {
@@ -25,5 +79,120 @@ public abstract class GraphInstanceTest {
         assertEquals("expected new graph to have no vertices",
                 Collections.emptySet(), emptyInstance().vertices());
     }
-    
+
+    @Test
+    public void testSetAddsVerticesAndReturnsPreviousWeight() {
+        Graph<String> graph = emptyInstance();
+        assertEquals("Previous edge weight should be 0.", 0, graph.set("A", "B", 4));
+        assertTrue("Set should add both endpoints.", graph.vertices().containsAll(Arrays.asList("A", "B")));
+        assertEquals("Previous edge weight should be 4.", 4, graph.set("A", "B", 7));
+        assertEquals("Edge weight from A to B should be 7.", 7, (int) graph.targets("A").get("B"));
+        assertEquals("Edge weight from A to B should be 7.", 7, (int) graph.sources("B").get("A"));
+    }
+
+    @Test
+    public void testSetZeroRemovesEdge() {
+        Graph<String> graph = emptyInstance();
+        graph.set("A", "B", 3);
+        assertEquals("Previous edge weight should be 3.", 3, graph.set("A", "B", 0));
+        assertEquals("A should have no targets.", Collections.emptyMap(), graph.targets("A"));
+        assertEquals("B should have no sources.", Collections.emptyMap(), graph.sources("B"));
+        assertTrue("Vertices should remain after edge removal.", graph.vertices().contains("A"));
+    }
+
+    @Test
+    public void testRemoveVertexRemovesIncidentEdges() {
+        Graph<String> graph = emptyInstance();
+        graph.set("A", "B", 5);
+        graph.set("B", "C", 2);
+        graph.set("C", "B", 1);
+        assertTrue("Removing B should succeed.", graph.remove("B"));
+        assertFalse("Removing B twice should fail.", graph.remove("B"));
+        assertEquals("A should have no targets.", Collections.emptyMap(), graph.targets("A"));
+        assertEquals("C should have no sources.", Collections.emptyMap(), graph.sources("C"));
+        assertEquals("C should have no targets.", Collections.emptyMap(), graph.targets("C"));
+    }
+
+    @Test
+    public void testSelfLoop() {
+        Graph<String> graph = emptyInstance();
+        graph.set("A", "A", 2);
+        assertEquals("A should be its own target.", 2, (int) graph.targets("A").get("A"));
+        assertTrue("Removing A should succeed.", graph.remove("A"));
+        assertEquals("expected no vertices", Collections.emptySet(), graph.vertices());
+    }
+
+    @Test
+    public void testQueriesReturnCopies() {
+        Graph<String> graph = emptyInstance();
+        graph.set("A", "B", 1);
+        graph.targets("A").put("C", 9);
+        graph.sources("B").clear();
+        assertEquals("Mutating a query result should not affect the graph.",
+                Collections.singletonMap("B", 1), graph.targets("A"));
+        assertEquals("Mutating a query result should not affect the graph.",
+                Collections.singletonMap("A", 1), graph.sources("B"));
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testVerticesUnmodifiable() {
+        Graph<String> graph = emptyInstance();
+        graph.add("A");
+        graph.vertices().clear();
+    }
+
+    @Test
+    public void testVerticesSnapshotUnaffectedByLaterMutation() {
+        Graph<String> graph = emptyInstance();
+        graph.add("A");
+        Set<String> before = graph.vertices();
+        graph.set("A", "B", 1);
+        graph.remove("A");
+        assertEquals(Collections.singleton("A"), before);
+        assertEquals(Collections.singleton("B"), graph.vertices());
+    }
+
+    @Test
+    public void testForEachNeighborMatchesQueries() {
+        Graph<String> graph = emptyInstance();
+        graph.set("A", "B", 1);
+        graph.set("A", "C", 2);
+        graph.set("C", "B", 3);
+        Map<String, Integer> targets = new HashMap<>();
+        graph.forEachTarget("A", targets::put);
+        assertEquals(graph.targets("A"), targets);
+        Map<String, Integer> sources = new HashMap<>();
+        graph.forEachSource("B", sources::put);
+        assertEquals(graph.sources("B"), sources);
+        graph.forEachTarget("missing", (target, weight) -> fail("no targets expected"));
+    }
+
+    @Test
+    public void testIncrementAddsToWeight() {
+        Graph<String> graph = emptyInstance();
+        assertEquals("Previous edge weight should be 0.", 0, graph.increment("A", "B", 2));
+        assertEquals("Previous edge weight should be 2.", 2, graph.increment("A", "B", 3));
+        assertEquals("Edge weight from A to B should be 5.", 5, (int) graph.sources("B").get("A"));
+        assertEquals("Previous edge weight should be 5.", 5, graph.increment("A", "B", -5));
+        assertFalse("Edge should be removed at weight 0.", graph.targets("A").containsKey("B"));
+    }
+
+    @Test
+    public void testTopNeighborsByWeight() {
+        Graph<String> graph = emptyInstance();
+        graph.set("A", "B", 1);
+        graph.set("A", "C", 5);
+        graph.set("A", "D", 3);
+        graph.set("B", "D", 4);
+        assertEquals(Arrays.asList("C", "D"), new ArrayList<>(graph.topTargets("A", 2).keySet()));
+        assertEquals(Arrays.asList(5, 3, 1), new ArrayList<>(graph.topTargets("A", 10).values()));
+        assertEquals(Arrays.asList("B", "A"), new ArrayList<>(graph.topSources("D", 2).keySet()));
+        assertTrue(graph.topTargets("A", 0).isEmpty());
+        assertTrue(graph.topSources("missing", 3).isEmpty());
+    }
+
+    @Test
+    public void testRandomChurnMatchesIndexedGraph() {
+        checkRandomChurn(emptyInstance(), id -> "v" + id, this::maintain);
+    }
 }
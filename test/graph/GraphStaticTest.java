@@ -5,7 +5,9 @@ package graph;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 
 import org.junit.Test;
 
@@ -22,6 +24,34 @@ public class GraphStaticTest {
         assertEquals("expected empty() graph to have no vertices",
                 Collections.emptySet(), Graph.empty().vertices());
     }
+
+    @Test
+    public void testHintsChooseBackend() {
+        assertTrue(Graph.empty(GraphHints.none()) instanceof IndexedGraph);
+        assertTrue(Graph.empty(GraphHints.none().concurrent()) instanceof ConcurrentGraph);
+        assertTrue(Graph.empty(GraphHints.none().access(GraphHints.Access.WRITE_HEAVY)) instanceof CompactGraph);
+        assertTrue(Graph.empty(GraphHints.none().expectedSize(1000, GraphHints.COMPACT_EDGES)) instanceof CompactGraph);
+        assertTrue(Graph.empty(GraphHints.none().expectedSize(1000, GraphHints.COMPACT_EDGES)
+                .access(GraphHints.Access.READ_HEAVY)) instanceof IndexedGraph);
+        assertTrue(Graph.empty(Integer.class, GraphHints.none().denseIntLabels(100)) instanceof DenseIntGraph);
+        assertTrue(Graph.empty(String.class, GraphHints.none().denseIntLabels(100)) instanceof IndexedGraph);
+        assertTrue(Graph.empty(GraphHints.none().denseIntLabels(100)) instanceof IndexedGraph);
+    }
+
+    @Test
+    public void testConcreteGraphsWithNonStringLabels() {
+        for (Graph<Integer> graph : Arrays.<Graph<Integer>>asList(new ConcreteEdgesGraph<>(), new ConcreteVerticesGraph<>(),
+                Graph.empty(Integer.class, GraphHints.none().denseIntLabels(10)))) {
+            assertEquals(0, graph.set(1, 2, 3));
+            assertEquals(3, graph.increment(1, 2, 4));
+            assertTrue(graph.add(5));
+            assertEquals(new HashSet<>(Arrays.asList(1, 2, 5)), graph.vertices());
+            assertEquals(Collections.singletonMap(2, 7), graph.targets(1));
+            assertEquals(Collections.singletonMap(1, 7), graph.sources(2));
+            assertTrue(graph.remove(2));
+            assertTrue(graph.targets(1).isEmpty());
+        }
+    }
     
     
 }
@@ -0,0 +1,33 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IndexedGraphTest extends GraphInstanceTest {
+
+    @Override public Graph<String> emptyInstance() {
+        return new IndexedGraph<>();
+    }
+
+    @Test
+    public void testAddDuplicateVertex() {
+        Graph<String> graph = emptyInstance();
+        assertTrue("First add of 'A' should succeed.", graph.add("A"));
+        assertFalse("Graph should not allow duplicate vertex 'A'.", graph.add("A"));
+    }
+
+    @Test
+    public void testUnchangedGraphSharesVertexSnapshot() {
+        Graph<String> graph = emptyInstance();
+        graph.set("A", "B", 1);
+        Set<String> before = graph.vertices();
+        graph.set("A", "B", 2);
+        assertSame("Unchanged vertex set should share its snapshot.", before, graph.vertices());
+        graph.add("C");
+        assertNotSame("Changed vertex set should get a new snapshot.", before, graph.vertices());
+    }
+
+}
@@ -0,0 +1,172 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedGraphTest {
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("graph", ".bin");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static Graph<String> randomGraph(long seed) {
+        Graph<String> graph = new IndexedGraph<>();
+        Random random = new Random(seed);
+        for (int i = 0; i < 2000; i++) {
+            graph.set("v" + random.nextInt(80), "w\u00e9" + random.nextInt(80), 1 + random.nextInt(20));
+            graph.set("v" + random.nextInt(80), "v" + random.nextInt(80), 1 + random.nextInt(20));
+        }
+        graph.add("isolated");
+        return graph;
+    }
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; 
+    }
+
+    @Test
+    public void testRoundTripMatchesOriginal() throws IOException {
+        Graph<String> graph = randomGraph(6005);
+        MappedGraph.write(graph, file);
+        MappedGraph mapped = MappedGraph.open(file);
+        assertEquals(graph.vertices(), mapped.vertices());
+        assertEquals(mapped.vertices(), graph.vertices());
+        for (String vertex : graph.vertices()) {
+            assertEquals(graph.targets(vertex), mapped.targets(vertex));
+            assertEquals(graph.sources(vertex), mapped.sources(vertex));
+            Map<String, Integer> sources = new HashMap<>();
+            mapped.forEachSource(vertex, sources::put);
+            assertEquals(graph.sources(vertex), sources);
+            for (Map.Entry<String, Integer> edge : graph.targets(vertex).entrySet()) {
+                assertEquals((int) edge.getValue(), mapped.weight(vertex, edge.getKey()));
+            }
+        }
+        assertEquals(Collections.emptyMap(), mapped.targets("missing"));
+        assertFalse(mapped.vertices().contains("missing"));
+        assertEquals(0, mapped.weight("isolated", "v1"));
+    }
+
+    @Test
+    public void testTargetsIteratedInOriginalOrder() throws IOException {
+        Graph<String> graph = randomGraph(42);
+        MappedGraph.write(graph, file);
+        MappedGraph mapped = MappedGraph.open(file);
+        for (String vertex : graph.vertices()) {
+            assertEquals(new ArrayList<>(graph.targets(vertex).keySet()),
+                    new ArrayList<>(mapped.targets(vertex).keySet()));
+            List<String> visited = new ArrayList<>();
+            mapped.forEachTarget(vertex, (target, weight) -> visited.add(target));
+            assertEquals(new ArrayList<>(graph.targets(vertex).keySet()), visited);
+        }
+    }
+
+    @Test
+    public void testEmptyGraph() throws IOException {
+        MappedGraph.write(Graph.empty(), file);
+        MappedGraph mapped = MappedGraph.open(file);
+        assertEquals(Collections.emptySet(), mapped.vertices());
+        assertEquals(Collections.emptyMap(), mapped.sources("A"));
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSetFailsFast() throws IOException {
+        Graph<String> graph = new IndexedGraph<>();
+        graph.set("A", "B", 1);
+        MappedGraph.write(graph, file);
+        MappedGraph mapped = MappedGraph.open(file);
+        assertSame(mapped, mapped.freeze());
+        mapped.set("A", "B", 2);
+    }
+
+    @Test(expected=IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        Files.write(file, "hello world, this is not a graph".getBytes("UTF-8"));
+        MappedGraph.open(file);
+    }
+
+    @Test(expected=IOException.class)
+    public void testRejectsTruncatedFile() throws IOException {
+        MappedGraph.write(randomGraph(1), file);
+        byte[] contents = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(contents, contents.length - 1));
+        MappedGraph.open(file);
+    }
+
+    @Test
+    public void testValidateRejectsCorruptSections() throws IOException {
+        MappedGraph.write(randomGraph(2), file);
+        byte[] contents = Files.readAllBytes(file);
+        ByteBuffer header = ByteBuffer.wrap(contents);
+        int n = header.getInt(8);
+        int capacity = header.getInt(16);
+        int outStart = 6 + (n + 1) + capacity;
+        int outTargets = outStart + n + 1;
+        MappedGraph.open(file).validate();
+        // an offset past the end of the edges, a decreasing offset, an ID
+        // out of range, and a label table entry out of range
+        int[][] corruptions = { { outStart + 1, Integer.MAX_VALUE }, { outStart + 1, -1 },
+                { outTargets, n }, { 6 + n + 1, n + 5 } };
+        for (int[] corruption : corruptions) {
+            ByteBuffer corrupt = ByteBuffer.wrap(contents.clone());
+            corrupt.putInt(4 * corruption[0], corruption[1]);
+            Files.write(file, corrupt.array());
+            // opening reads only the header
+            MappedGraph mapped = MappedGraph.open(file);
+            try {
+                mapped.validate();
+                fail("expected corrupt int " + corruption[0] + " to be rejected");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().startsWith("corrupt graph file"));
+            }
+        }
+    }
+
+    @Test
+    public void testQueryOfCorruptRunFails() throws IOException {
+        Graph<String> graph = new IndexedGraph<>();
+        graph.set("A", "B", 1);
+        MappedGraph.write(graph, file);
+        byte[] contents = Files.readAllBytes(file);
+        ByteBuffer corrupt = ByteBuffer.wrap(contents);
+        int n = corrupt.getInt(8);
+        int capacity = corrupt.getInt(16);
+        int outStart = 6 + (n + 1) + capacity;
+        // end every out-run past the last edge
+        for (int id = 1; id <= n; id++) {
+            corrupt.putInt(4 * (outStart + id), Integer.MAX_VALUE);
+        }
+        Files.write(file, contents);
+        MappedGraph mapped = MappedGraph.open(file);
+        assertEquals(Collections.singletonMap("A", 1), mapped.sources("B"));
+        try {
+            mapped.targets("A");
+            fail("expected the corrupt run to be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("corrupt graph file"));
+        }
+    }
+}
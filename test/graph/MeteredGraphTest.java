@@ -0,0 +1,35 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import metrics.Metrics;
+
+public class MeteredGraphTest extends GraphInstanceTest {
+
+    @Override public Graph<String> emptyInstance() {
+        return new MeteredGraph<>(new IndexedGraph<>(), new Metrics(), "graph");
+    }
+
+    @Test
+    public void testRecordsEveryCall() {
+        Metrics metrics = new Metrics();
+        Graph<String> graph = new MeteredGraph<>(new IndexedGraph<>(), metrics, "test");
+        graph.set("A", "B", 1);
+        graph.set("A", "C", 2);
+        graph.increment("A", "B", 1);
+        graph.targets("A");
+        graph.sources("B");
+        graph.forEachTarget("A", (target, weight) -> { });
+        Graph<String> frozen = graph.freeze();
+        frozen.targets("A");
+        assertEquals(2, metrics.histogram("test.set").count());
+        assertEquals(1, metrics.histogram("test.increment").count());
+        assertEquals(2, metrics.histogram("test.targets").count());
+        assertEquals(1, metrics.histogram("test.sources").count());
+        assertEquals(1, metrics.histogram("test.forEachTarget").count());
+        assertEquals(0, metrics.histogram("test.remove").count());
+        assertTrue(((MeteredGraph<String>) frozen).delegate() instanceof FrozenGraph);
+    }
+}
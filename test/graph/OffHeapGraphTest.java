@@ -0,0 +1,65 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class OffHeapGraphTest extends GraphInstanceTest {
+
+    @Override public Graph<String> emptyInstance() {
+        return new OffHeapGraph<>();
+    }
+
+    @Override protected void maintain(Graph<String> graph) {
+        OffHeapGraph<String> offHeap = (OffHeapGraph<String>) graph;
+        offHeap.compact();
+        offHeap.validate();
+    }
+
+    @Test
+    public void testAddDuplicateVertex() {
+        Graph<String> graph = emptyInstance();
+        assertTrue("First add of 'A' should succeed.", graph.add("A"));
+        assertFalse("Graph should not allow duplicate vertex 'A'.", graph.add("A"));
+    }
+
+    @Test
+    public void testCompactionKeepsEdgesAndFreesGarbage() {
+        OffHeapGraph<String> graph = new OffHeapGraph<>();
+        // a high-degree vertex grows its tables many times, leaving garbage behind
+        for (int i = 0; i < 50000; i++) {
+            graph.set("hub", "w" + i, i + 1);
+        }
+        for (int i = 0; i < 50000; i += 2) {
+            graph.remove("w" + i);
+        }
+        graph.compact();
+        graph.validate();
+        assertEquals(25000, graph.targets("hub").size());
+        assertEquals(4, (int) graph.targets("hub").get("w3"));
+        assertEquals(4, (int) graph.sources("w3").get("hub"));
+        assertFalse(graph.targets("hub").containsKey("w2"));
+        int[] count = { 0 };
+        graph.forEachTarget("hub", (target, weight) -> count[0]++);
+        assertEquals(25000, count[0]);
+    }
+
+    @Test
+    public void testTableBytesRejectsTablesLargerThanOneBuffer() {
+        assertEquals(32, OffHeapGraph.tableBytes(4));
+        assertEquals(1 << 30, OffHeapGraph.tableBytes(1 << 27));
+        // 2^28 slots of 8 bytes overflow an int
+        try {
+            OffHeapGraph.tableBytes(1 << 28);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            OffHeapGraph.tableBytes(1 << 30);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
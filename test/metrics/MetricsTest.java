@@ -0,0 +1,70 @@
+package metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; 
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        Histogram histogram = new Metrics().histogram("empty");
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.valueAt(0.99));
+        assertEquals(0, histogram.mean(), 0);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        Histogram histogram = new Metrics().histogram("small");
+        for (int value = 1; value <= 20; value++) {
+            histogram.record(value);
+        }
+        assertEquals(20, histogram.count());
+        assertEquals(10, histogram.valueAt(0.5));
+        assertEquals(20, histogram.valueAt(1));
+        assertEquals(1, histogram.valueAt(0));
+        assertEquals(10.5, histogram.mean(), 1e-9);
+    }
+
+    @Test
+    public void testQuantilesWithinRelativeError() {
+        Histogram histogram = new Metrics().histogram("latency");
+        Random random = new Random(6005);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 30);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double quantile : new double[] { 0.01, 0.5, 0.9, 0.99, 0.999, 1 }) {
+            long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            long reported = histogram.valueAt(quantile);
+            assertTrue(quantile + ": " + reported + " vs " + exact,
+                    reported >= exact && reported <= exact + exact / 32 + 1);
+        }
+        assertEquals(values[values.length - 1], histogram.max());
+    }
+
+    @Test
+    public void testRegistryDumpsAndResets() {
+        Metrics metrics = new Metrics();
+        assertSame(metrics.histogram("b.latency"), metrics.histogram("b.latency"));
+        metrics.histogram("b.latency").record(7);
+        metrics.counter("a \"quoted\" count").add(3);
+        assertEquals("{\"counters\":{\"a \\\"quoted\\\" count\":3},\"histograms\":{\"b.latency\":"
+                + "{\"count\":1,\"mean\":7.0,\"p50\":7,\"p90\":7,\"p99\":7,\"p999\":7,\"max\":7}}}", metrics.toJson());
+        assertTrue(metrics.toString().contains("a \"quoted\" count = 3\n"));
+        metrics.reset();
+        assertEquals(0, metrics.histogram("b.latency").count());
+        assertEquals(0, metrics.counter("a \"quoted\" count").sum());
+    }
+}
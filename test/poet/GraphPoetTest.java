@@ -2,14 +2,34 @@ package poet;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import graph.Graph;
 
 import org.junit.Before;
 import org.junit.Test;
 
 public class GraphPoetTest {
     
+    private final Path corpusPath = Paths.get("corpus.txt");
     private GraphPoet poet;
     
     @Before
@@ -82,5 +102,481 @@ public class GraphPoetTest {
         assertEquals(expectedPoem, poet.poem(input)); // "of" might be the bridge word between both pairs.
     }
 
+    // Test case for building a poet from a stream rather than a file
+    @Test
+    public void testReaderCorpusMatchesFileCorpus() throws IOException {
+        GraphPoet streamed = new GraphPoet(new StringReader("Hello of  GOODBYE\nhello\tof\r\ngoodbye"));
+        assertEquals("hello of goodbye", streamed.poem("hello goodbye"));
+        assertEquals(2, (int) streamed.getGraph().targets("hello").get("of"));
+        assertEquals(1, (int) streamed.getGraph().targets("goodbye").get("hello"));
+    }
+
+    // Test case for words that straddle the reader's internal buffer boundary
+    @Test
+    public void testStreamingAcrossBufferBoundary() throws IOException {
+        StringBuilder corpus = new StringBuilder();
+        while (corpus.length() < 8190) corpus.append("a ");
+        corpus.append("longword tail");
+        GraphPoet streamed = new GraphPoet(new ByteArrayInputStream(corpus.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Collections.singletonMap("tail", 1), streamed.getGraph().targets("longword"));
+        assertEquals(Collections.singletonMap("longword", 1), streamed.getGraph().sources("tail"));
+    }
+
+    // Test case for the parallel build producing the same graph as the sequential one
+    @Test
+    public void testParallelBuildMatchesSequential() throws IOException {
+        GraphPoet parallel = GraphPoet.parallel(corpusPath);
+        assertEquals(poet.getGraph().vertices(), parallel.getGraph().vertices());
+        for (String vertex : poet.getGraph().vertices()) {
+            assertEquals(poet.getGraph().targets(vertex), parallel.getGraph().targets(vertex));
+        }
+    }
+
+    // Test case for bigrams that cross the boundaries between parallel chunks
+    @Test
+    public void testParallelCountsAcrossChunkBoundaries() throws IOException {
+        for (int chunkSize = 1; chunkSize < 40; chunkSize++) {
+            Map<String, Map<String, Integer>> counts = BigramCounter.count(corpusPath, ForkJoinPool.commonPool(), chunkSize).counts();
+            for (String vertex : poet.getGraph().vertices()) {
+                assertEquals("chunk size " + chunkSize, poet.getGraph().targets(vertex),
+                        counts.getOrDefault(vertex, Collections.emptyMap()));
+            }
+            int edges = 0;
+            for (Map<String, Integer> row : counts.values()) edges += row.size();
+            int expected = 0;
+            for (String vertex : poet.getGraph().vertices()) expected += poet.getGraph().targets(vertex).size();
+            assertEquals("chunk size " + chunkSize, expected, edges);
+        }
+    }
+
+    // Test case for the bridge index producing the same poems as direct search
+    @Test
+    public void testIndexedBridgesMatchDirectSearch() throws IOException {
+        GraphPoet eager = new GraphPoet(corpusPath.toFile());
+        eager.indexBridges();
+        GraphPoet lazy = new GraphPoet(corpusPath.toFile());
+        lazy.indexBridges(2);
+        String[] inputs = { "hello goodbye", "the quick brown fox jumps", "Test the system.",
+                "the fox jumps the lazy the dog", "hello world", "", "hello" };
+        for (String input : inputs) {
+            assertEquals(poet.poem(input), eager.poem(input));
+            assertEquals(poet.poem(input), lazy.poem(input));
+        }
+    }
+
+    // Test case for tie-breaking between equally heavy bridges in the index
+    @Test
+    public void testIndexedBridgesBreakTiesLikeDirectSearch() throws IOException {
+        Random random = new Random(6005);
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < 3000; i++) corpus.append("w").append(random.nextInt(40)).append(' ');
+        GraphPoet direct = new GraphPoet(new StringReader(corpus.toString()));
+        GraphPoet indexed = new GraphPoet(new StringReader(corpus.toString()));
+        indexed.indexBridges();
+        for (int i = 0; i < 40; i++) {
+            for (int j = 0; j < 40; j++) {
+                String input = "w" + i + " W" + j;
+                assertEquals(direct.poem(input), indexed.poem(input));
+            }
+        }
+    }
+
+    // Test case for the bridge cache counting hits, misses and evictions
+    @Test
+    public void testBridgeCacheStats() {
+        assertNull(poet.bridgeCacheStats());
+        poet.cacheBridges(1);
+        assertEquals("hello of goodbye", poet.poem("hello goodbye"));
+        assertEquals("hello of goodbye", poet.poem("hello goodbye"));
+        assertEquals("hello world", poet.poem("hello world"));
+        assertEquals("hello world", poet.poem("hello world"));
+        CacheStats stats = poet.bridgeCacheStats();
+        assertEquals(2, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(0.5, stats.hitRate(), 1e-9);
+        assertEquals(1, stats.evictions());
+        assertEquals(1, stats.size());
+    }
+
+    // Test case for the bridge cache and index seeing mutations made through getGraph()
+    @Test
+    public void testBridgeCacheAndIndexInvalidatedByGraphMutation() {
+        poet.cacheBridges(100);
+        assertEquals("hello world", poet.poem("hello world"));
+        poet.getGraph().set("hello", "big", 1);
+        poet.getGraph().set("big", "world", 1);
+        assertEquals("hello big world", poet.poem("hello world"));
+
+        poet.indexBridges();
+        assertEquals("hello of goodbye", poet.poem("hello goodbye"));
+        poet.getGraph().set("hello", "fond", 5);
+        poet.getGraph().set("fond", "goodbye", 5);
+        assertEquals("hello fond goodbye", poet.poem("hello goodbye"));
+        poet.getGraph().remove("fond");
+        assertEquals("hello of goodbye", poet.poem("hello goodbye"));
+    }
+
+    // Test case for serving poems from a frozen graph
+    @Test
+    public void testFrozenPoetWritesSamePoems() throws IOException {
+        GraphPoet frozen = new GraphPoet(corpusPath);
+        frozen.cacheBridges(16);
+        frozen.freeze();
+        for (String input : new String[] { "hello goodbye", "the quick brown fox jumps", "Test the system." }) {
+            assertEquals(poet.poem(input), frozen.poem(input));
+        }
+        try {
+            frozen.getGraph().set("hello", "world", 1);
+            fail("expected frozen graph to reject mutation");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals("hello world", frozen.poem("hello world"));
+    }
+
+    // Test case for saving a graph and serving poems from the mapped file
+    @Test
+    public void testLoadedPoetWritesSamePoems() throws IOException {
+        GraphPoet poet = new GraphPoet(corpusPath);
+        Path graphFile = Files.createTempFile("poet", ".graph");
+        try {
+            poet.save(graphFile);
+            GraphPoet loaded = GraphPoet.load(graphFile);
+            assertEquals(poet.getGraph().vertices(), loaded.getGraph().vertices());
+            for (String input : new String[] { "hello goodbye", "the quick brown fox jumps", "Test the system." }) {
+                assertEquals(poet.poem(input), loaded.poem(input));
+            }
+        } finally {
+            Files.delete(graphFile);
+        }
+    }
+
+    // Test case for generating a batch of poems
+    @Test
+    public void testBatchMatchesSinglePoems() throws IOException {
+        GraphPoet poet = new GraphPoet(corpusPath);
+        List<String> inputs = new ArrayList<>();
+        Random random = new Random(6005);
+        List<String> words = new ArrayList<>(poet.getGraph().vertices());
+        words.add("Unknown");
+        for (int i = 0; i < 300; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int j = random.nextInt(6); j >= 0; j--) {
+                input.append(words.get(random.nextInt(words.size()))).append(j > 0 ? " " : "");
+            }
+            inputs.add(input.toString());
+        }
+        inputs.add("");
+        inputs.add("Hello  Goodbye");
+
+        List<String> expected = new ArrayList<>();
+        for (String input : inputs) {
+            expected.add(poet.poem(input));
+        }
+        assertEquals(expected, poet.poems(inputs));
+        poet.cacheBridges(64);
+        assertEquals(expected, poet.poems(inputs));
+        poet.indexBridges(8);
+        assertEquals(expected, poet.poems(inputs));
+        assertEquals(Collections.emptyList(), poet.poems(Collections.emptyList()));
+    }
+
+    // Test case for streaming a poem from a reader
+    @Test
+    public void testStreamingPoemMatchesPoem() throws IOException {
+        GraphPoet poet = new GraphPoet(corpusPath);
+        List<String> words = new ArrayList<>(poet.getGraph().vertices());
+        words.add("Unknown");
+        String[] spaces = { " ", "  ", "\t", "\r\n", " \u000B\f " };
+        Random random = new Random(6005);
+        List<String> inputs = new ArrayList<>(Arrays.asList("", "hello", " hello goodbye", "hello goodbye \n", "a\u00e9 B"));
+        for (int i = 0; i < 200; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int j = random.nextInt(i < 190 ? 8 : 4000); j >= 0; j--) {
+                if (random.nextInt(4) == 0) input.append(spaces[random.nextInt(spaces.length)]);
+                input.append(words.get(random.nextInt(words.size())));
+                input.append(spaces[random.nextInt(spaces.length)]);
+            }
+            inputs.add(input.toString());
+        }
+        for (String input : inputs) {
+            StringBuilder output = new StringBuilder();
+            poet.poem(new StringReader(input), output);
+            assertEquals(poet.poem(input), output.toString());
+        }
+
+        StringBuilder output = new StringBuilder();
+        poet.poem(new StringReader(" \t\n"), output);
+        assertEquals("", output.toString());
+    }
+
+    // Test case for the hand-written tokenizer matching split and toLowerCase
+    @Test
+    public void testTokenizerMatchesRegexSplit() throws IOException {
+        String[] pieces = { "", " ", "\t\n", "\u000B\f\r", "Hello", "WORLD", "caf\u00c9", "\u0130stanbul", "\u00a0", "a", "Z9" };
+        Random random = new Random(6005);
+        WordTable table = new WordTable();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int j = random.nextInt(6); j > 0; j--) {
+                input.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String text = input.toString();
+            assertArrayEquals(text, text.split("\\s+"), WordReader.split(text));
+
+            WordReader words = new WordReader(new StringReader(text));
+            for (String word : text.trim().isEmpty() ? new String[0] : text.trim().split("\\s+")) {
+                String folded = words.nextFolded(table);
+                assertEquals(word.toLowerCase(), folded);
+                assertSame("words should be canonical", table.intern(word.toLowerCase()), folded);
+            }
+            assertNull(words.nextFolded(table));
+        }
+    }
+
+    // Test case for appending text to an existing poet
+    @Test
+    public void testAddTextMatchesRebuild() throws IOException {
+        String first = "Hello world of the day\nand the night\n";
+        String second = "Goodbye  cruel WORLD of hello and goodbye";
+        GraphPoet expected = new GraphPoet(new StringReader(first + second));
+
+        GraphPoet plain = new GraphPoet(new StringReader(first));
+        GraphPoet indexed = new GraphPoet(new StringReader(first));
+        indexed.indexBridges();
+        GraphPoet lazy = new GraphPoet(new StringReader(first));
+        lazy.indexBridges(2);
+        lazy.cacheBridges(4);
+        String[] inputs = { "night goodbye", "hello of", "world the", "Day AND Night", "cruel of" };
+        for (GraphPoet poet : new GraphPoet[] { indexed, lazy }) {
+            for (String input : inputs) poet.poem(input);
+        }
+
+        for (GraphPoet poet : new GraphPoet[] { plain, indexed, lazy }) {
+            poet.addText(second);
+            assertEquals(1, (int) poet.getGraph().targets("night").get("goodbye"));
+            for (String vertex : expected.getGraph().vertices()) {
+                assertEquals(expected.getGraph().targets(vertex), poet.getGraph().targets(vertex));
+            }
+            for (String input : inputs) {
+                assertEquals(expected.poem(input), poet.poem(input));
+            }
+        }
+    }
+
+    // Test case for appending a corpus file to a parallel-built poet
+    @Test
+    public void testAddCorpusContinuesFromLastWord() throws IOException {
+        GraphPoet poet = GraphPoet.parallel(corpusPath);
+        poet.addText("");
+        poet.addCorpus(corpusPath);
+        GraphPoet twice = new GraphPoet(new StringReader(
+                new String(Files.readAllBytes(corpusPath), StandardCharsets.UTF_8) + "\n"
+                + new String(Files.readAllBytes(corpusPath), StandardCharsets.UTF_8)));
+        assertEquals(twice.getGraph().vertices(), poet.getGraph().vertices());
+        for (String vertex : twice.getGraph().vertices()) {
+            assertEquals(twice.getGraph().targets(vertex), poet.getGraph().targets(vertex));
+        }
+    }
+
+    // Test case for threshold bridge search over high-degree words
+    @Test
+    public void testThresholdSearchMatchesExhaustiveSearch() throws IOException {
+        Random random = new Random(6005);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40000; i++) {
+            // a few hub words with many neighbors and many tied weights
+            int word = random.nextInt(4) == 0 ? random.nextInt(3) : random.nextInt(300);
+            text.append('w').append(word).append(' ');
+        }
+        GraphPoet poet = new GraphPoet(new StringReader(text.toString()));
+        GraphPoet frozen = new GraphPoet(new StringReader(text.toString()));
+        frozen.freeze();
+        assertTrue(poet.getGraph().targets("w0").size() > 64);
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            inputs.add("w" + random.nextInt(4) + " w" + random.nextInt(310) + " W" + random.nextInt(3));
+        }
+        for (String input : inputs) {
+            assertEquals(poet.poem(input), frozen.poem(input));
+        }
+        assertEquals(poet.poems(inputs), frozen.poems(inputs));
+    }
+
+    // Test case for bridging by paths of several hops
+    @Test
+    public void testMultiHopBridges() throws IOException {
+        GraphPoet poet = new GraphPoet(new StringReader(""));
+        Graph<String> graph = poet.getGraph();
+        graph.set("a", "x", 2);
+        graph.set("x", "b", 2);
+        graph.set("a", "y", 3);
+        graph.set("y", "z", 3);
+        graph.set("z", "b", 3);
+        graph.set("z", "a", 9);
+        assertEquals("a x b", poet.poem("a b"));
+        poet.cacheBridges(8);
+        poet.bridgeHops(3, 1000, 1, TimeUnit.SECONDS);
+        assertEquals("A y z B", poet.poem("A B"));
+        assertEquals("z a y z", poet.poem("z z"));
+        assertEquals("b a", poet.poem("b a"));
+        poet.bridgeHops(3, 1, 1, TimeUnit.SECONDS);
+        assertEquals("only the root can be expanded, finding no bridge", "a b", poet.poem("a b"));
+        poet.bridgeHops(2, 1000, 1, TimeUnit.SECONDS);
+        assertEquals("a x b", poet.poem("a b"));
+    }
+
+    // Test case for multi-hop search finding the heaviest path within budget
+    @Test
+    public void testMultiHopSearchMatchesExhaustiveSearch() throws IOException {
+        Random random = new Random(6005);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            text.append('w').append(random.nextInt(40)).append(' ');
+        }
+        GraphPoet poet = new GraphPoet(new StringReader(text.toString()));
+        Graph<String> graph = poet.getGraph();
+        poet.bridgeHops(4, 1000000, 1, TimeUnit.MINUTES);
+        Map<String, Map<String, Integer>> adjacency = new HashMap<>();
+        for (String vertex : graph.vertices()) {
+            adjacency.put(vertex, graph.targets(vertex));
+        }
+        for (int i = 0; i < 100; i++) {
+            String w1 = "w" + random.nextInt(42);
+            String w2 = "w" + random.nextInt(42);
+            String poem = poet.poem(w1 + " " + w2);
+            int best = heaviestPath(adjacency, w2, new ArrayList<>(Collections.singletonList(w1)), 0, 4);
+            if (best == 0) {
+                assertEquals(w1 + " " + w2, poem);
+                continue;
+            }
+            String[] words = poem.split(" ");
+            assertTrue(words.length >= 3 && words.length <= 5);
+            assertEquals(new HashSet<>(Arrays.asList(words)).size(), words.length - (w1.equals(w2) ? 1 : 0));
+            int weight = 0;
+            for (int j = 0; j + 1 < words.length; j++) {
+                weight += graph.targets(words[j]).get(words[j + 1]);
+            }
+            assertEquals(best, weight);
+        }
+        assertEquals("every search fit its budget", 0, poet.truncatedHopSearches());
+    }
+
+    // Test case for multi-hop searches reporting when they run out of budget,
+    // and for heavier edges set after the search mode is chosen
+    @Test
+    public void testMultiHopSearchReportsTruncation() throws IOException {
+        GraphPoet poet = new GraphPoet(new StringReader(""));
+        Graph<String> graph = poet.getGraph();
+        for (int i = 0; i < 100; i++) {
+            graph.set("a", "x" + i, 1);
+            graph.set("x" + i, "b", 1);
+        }
+        // one expansion leaves a frontier of 64, too small for a's 100 targets
+        poet.bridgeHops(3, 1, 1, TimeUnit.SECONDS);
+        assertEquals("a b", poet.poem("a b"));
+        assertEquals(1, poet.truncatedHopSearches());
+
+        poet.bridgeHops(3, 1000, 1, TimeUnit.SECONDS);
+        graph.set("a", "y", 50);
+        graph.set("y", "z", 50);
+        graph.set("z", "b", 50);
+        assertEquals("a y z b", poet.poem("a b"));
+        assertEquals(0, poet.truncatedHopSearches());
+    }
+
+    @Test
+    public void testMultiHopSearchBudgetsSourcesOfSecondWord() throws IOException {
+        GraphPoet poet = new GraphPoet(new StringReader(""));
+        Graph<String> graph = poet.getGraph();
+        graph.set("a", "x", 1);
+        graph.set("x", "y", 1);
+        graph.set("y", "the", 1);
+        for (int i = 0; i < 5000; i++) {
+            graph.set("w" + i, "the", 1);
+        }
+        // reading all of the's 5001 sources would spend the budget many times over
+        poet.bridgeHops(3, 100, 1, TimeUnit.SECONDS);
+        poet.poem("a the");
+        assertEquals(1, poet.truncatedHopSearches());
+
+        poet.bridgeHops(3, 20000, 1, TimeUnit.SECONDS);
+        assertEquals("a x y the", poet.poem("a the"));
+        assertEquals(0, poet.truncatedHopSearches());
+    }
+
+    // Weight of the heaviest simple path from the end of path to w2 with
+    // between 2 and hops edges, given the weight so far, or 0 if there is none.
+    private static int heaviestPath(Map<String, Map<String, Integer>> adjacency, String w2, List<String> path, int weight, int hops) {
+        int best = 0;
+        Map<String, Integer> targets = adjacency.getOrDefault(path.get(path.size() - 1), Collections.emptyMap());
+        if (path.size() >= 2 && targets.containsKey(w2)) {
+            best = weight + targets.get(w2);
+        }
+        if (path.size() < hops) {
+            for (Map.Entry<String, Integer> edge : targets.entrySet()) {
+                if (path.contains(edge.getKey()) || edge.getKey().equals(w2)) continue;
+                path.add(edge.getKey());
+                best = Math.max(best, heaviestPath(adjacency, w2, path, weight + edge.getValue(), hops));
+                path.remove(path.size() - 1);
+            }
+        }
+        return best;
+    }
+
+    // Test case for the graph built in bulk from a whole corpus
+    @Test
+    public void testBulkBuildMatchesWordByWordIngest() throws IOException {
+        String corpus = "To be or not to be that is the question\nwhether tis nobler in the mind to suffer";
+        GraphPoet bulk = new GraphPoet(new StringReader(corpus));
+        GraphPoet incremental = new GraphPoet(new StringReader(""));
+        for (String word : corpus.split("\\s+")) {
+            incremental.addText(word);
+        }
+        assertEquals(incremental.getGraph().vertices(), bulk.getGraph().vertices());
+        for (String vertex : bulk.getGraph().vertices()) {
+            assertEquals(incremental.getGraph().targets(vertex), bulk.getGraph().targets(vertex));
+            assertEquals(incremental.getGraph().sources(vertex), bulk.getGraph().sources(vertex));
+        }
+        assertEquals(2, (int) bulk.getGraph().targets("to").get("be"));
+        assertTrue("a one-word corpus has no word pairs",
+                new GraphPoet(new StringReader("alone")).getGraph().vertices().isEmpty());
+        bulk.getGraph().set("question", "mind", 5);
+        assertEquals(5, (int) bulk.getGraph().targets("question").get("mind"));
+    }
+
+    // Test case for weighted random walks
+    @Test
+    public void testRandomWalkFollowsEdgesByWeight() throws IOException {
+        GraphPoet poet = new GraphPoet(new StringReader("x y x y x y x z x end"));
+        Graph<String> graph = poet.getGraph();
+        assertEquals("same seed, same walk", poet.walk("X", 50, 7), poet.walk("x", 50, 7));
+        String[] words = poet.walk("x", 1000, 11).split(" ");
+        assertEquals("x", words[0]);
+        for (int i = 0; i + 1 < words.length; i++) {
+            assertTrue(words[i] + " -> " + words[i + 1], graph.targets(words[i]).containsKey(words[i + 1]));
+        }
+        assertEquals("end", words[words.length - 1]);
+        assertEquals("a walk stops at a word without edges", "end", poet.walk("end", 5, 1));
+        assertEquals("unknown", poet.walk("Unknown", 5, 1));
+
+        // x -> y weighs 3, x -> z and x -> end weigh 1 each
+        int[] counts = new int[3];
+        SplittableRandom random = new SplittableRandom(24);
+        StringBuilder step = new StringBuilder();
+        int walks = 50000;
+        for (int i = 0; i < walks; i++) {
+            step.setLength(0);
+            poet.walk("x", 2, random, step);
+            counts[step.toString().equals("x y") ? 0 : step.toString().equals("x z") ? 1 : 2]++;
+        }
+        assertEquals(0.6, counts[0] / (double) walks, 0.01);
+        assertEquals(0.2, counts[1] / (double) walks, 0.01);
+        assertEquals(0.2, counts[2] / (double) walks, 0.01);
+
+        poet.addText("z q");
+        assertEquals("the walker sees text added later", "end z q", poet.walk("end", 3, 3));
+    }
+
     // Further tests could focus on graph behavior, edge cases in parsing, etc.
 }
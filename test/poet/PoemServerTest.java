@@ -0,0 +1,189 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PoemServerTest {
+
+    /** A connection to a server, sending lines and reading answers. */
+    private static class Client implements AutoCloseable {
+        private final Socket socket;
+        private final Writer out;
+        private final BufferedReader in;
+
+        Client(PoemServer server) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        void send(String line) throws IOException {
+            out.write(line + "\n");
+            out.flush();
+        }
+
+        String receive() throws IOException {
+            return in.readLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; 
+    }
+
+    @Test
+    public void testServesPoemsInOrder() throws IOException, InterruptedException {
+        GraphPoet poet = new GraphPoet(Paths.get("corpus.txt"));
+        poet.freeze();
+        PoemServer server = new PoemServer(poet, 0, 4, 2, 8);
+        try (Client client = new Client(server)) {
+            for (String input : new String[] { "hello goodbye", "Test the system.", "", "  \t ", "Hello  World" }) {
+                client.send(input);
+            }
+            assertEquals("+" + poet.poem("hello goodbye"), client.receive());
+            assertEquals("+" + poet.poem("Test the system."), client.receive());
+            assertEquals("+", client.receive());
+            assertEquals("+", client.receive());
+            assertEquals("+" + poet.poem("Hello  World"), client.receive());
+        } finally {
+            assertTrue(server.shutdown(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testManyConcurrentClients() throws Exception {
+        GraphPoet poet = new GraphPoet(Paths.get("corpus.txt"));
+        poet.freeze();
+        PoemServer server = new PoemServer(poet, 0, 200, 4, 1000);
+        ExecutorService clients = Executors.newFixedThreadPool(50);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int id = i;
+                results.add(clients.submit(() -> {
+                    try (Client client = new Client(server)) {
+                        for (int j = 0; j < 20; j++) {
+                            String input = "hello " + id + " goodbye " + j;
+                            client.send(input);
+                            assertEquals("+" + poet.poem(input), client.receive());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            clients.shutdownNow();
+            assertTrue(server.shutdown(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testConnectionsLimitedToPlatformThreads() throws Exception {
+        PoemServer server = new PoemServer(input -> input, 0, 1000000, 1, 0);
+        try {
+            boolean virtual;
+            try {
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                virtual = true;
+            } catch (NoSuchMethodException e) {
+                virtual = false;
+            }
+            int threads = PoemServer.PLATFORM_THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+            assertEquals(virtual ? 1000000 : threads, server.maxConnections());
+            try (Client client = new Client(server)) {
+                client.send("hello");
+                assertEquals("+hello", client.receive());
+            }
+        } finally {
+            assertTrue(server.shutdown(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PoemServer server = new PoemServer(input -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return input.toUpperCase();
+        }, 0, 4, 1, 0);
+        try (Client slow = new Client(server); Client fast = new Client(server)) {
+            slow.send("first");
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            fast.send("second");
+            assertEquals("-busy", fast.receive());
+            release.countDown();
+            assertEquals("+FIRST", slow.receive());
+            fast.send("third");
+            assertEquals("+THIRD", fast.receive());
+        } finally {
+            release.countDown();
+            assertTrue(server.shutdown(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testShutdownAnswersInputsInFlight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PoemServer server = new PoemServer(input -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return input;
+        }, 0, 4, 1, 4);
+        try (Client client = new Client(server)) {
+            client.send("in flight");
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            ExecutorService stopper = Executors.newSingleThreadExecutor();
+            Future<Boolean> stopped = stopper.submit(() -> server.shutdown(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            release.countDown();
+            assertEquals("+in flight", client.receive());
+            assertNull("connection should be closed after shutdown", client.receive());
+            assertTrue(stopped.get(10, TimeUnit.SECONDS));
+            stopper.shutdown();
+        }
+        try {
+            new Client(server).close();
+            fail("expected new connections to be refused");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}